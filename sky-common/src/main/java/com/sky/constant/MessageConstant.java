@@ -14,8 +14,11 @@ public class MessageConstant {
     public static final String CATEGORY_BE_RELATED_BY_SETMEAL = "当前分类关联了套餐,不能删除";
     public static final String CATEGORY_BE_RELATED_BY_DISH = "当前分类关联了菜品,不能删除";
     public static final String SHOPPING_CART_IS_NULL = "购物车数据为空，不能下单";
+    public static final String SHOPPING_CART_ITEM_NOT_ON_SALE = "购物车中存在已停售的商品，不能下单";
+    public static final String SHOPPING_CART_PRICE_CHANGED = "购物车中商品价格已变动，请确认后重新下单";
     public static final String ADDRESS_BOOK_IS_NULL = "用户地址为空，不能下单";
     public static final String LOGIN_FAILED = "登录失败";
+    public static final String LOGIN_BUSY = "登录人数过多，请稍后再试";
     public static final String UPLOAD_FAILED = "文件上传失败";
     public static final String SETMEAL_ENABLE_FAILED = "套餐内包含未启售菜品，无法启售";
     public static final String PASSWORD_EDIT_FAILED = "密码修改失败";
@@ -25,6 +28,8 @@ public class MessageConstant {
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
     public static final String DISH_BE_RELATED_BY_ONSALE_SETMEAL = "当前菜品关联了起售中的套餐,不能禁用";
+    public static final String REPORT_DATE_RANGE_ERROR = "开始日期不能晚于结束日期";
+    public static final String REPORT_DATE_RANGE_TOO_LONG = "导出的时间范围不能超过366天";
 
 
 }
@@ -0,0 +1,16 @@
+package com.sky.constant;
+
+/**
+ * WebSocket推送主题常量
+ */
+public class WebSocketTopicConstant {
+
+    //来单提醒
+    public static final String ORDER = "order";
+
+    //客户催单
+    public static final String REMINDER = "reminder";
+
+    //单个会话的主题前缀，每个会话订阅 sid:会话id，避免与业务主题重名
+    public static final String SESSION_PREFIX = "sid:";
+}
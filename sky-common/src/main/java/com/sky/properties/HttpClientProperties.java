@@ -0,0 +1,52 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.http-client")
+@Data
+public class HttpClientProperties {
+
+    /**
+     * 连接池最大连接数
+     */
+    private int maxTotal = 200;
+
+    /**
+     * 每个路由(目标主机)的最大连接数
+     */
+    private int maxPerRoute = 50;
+
+    /**
+     * 建立连接超时时间(毫秒)
+     */
+    private int connectTimeout = 5000;
+
+    /**
+     * 从连接池获取连接的超时时间(毫秒)
+     */
+    private int connectionRequestTimeout = 5000;
+
+    /**
+     * 读取响应超时时间(毫秒)
+     */
+    private int socketTimeout = 5000;
+
+    /**
+     * 服务端未返回Keep-Alive头时，连接的默认保活时间(毫秒)
+     */
+    private long keepAlive = 30000;
+
+    /**
+     * 空闲超过该时间(毫秒)的连接会被后台线程关闭
+     */
+    private long maxIdleTime = 30000;
+
+    /**
+     * 连接空闲超过该时间(毫秒)后，复用前先校验连接是否可用
+     */
+    private int validateAfterInactivity = 2000;
+
+}
@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.redis-codec")
+@Data
+public class RedisCodecProperties {
+
+    /**
+     * redis value的序列化格式：smile(二进制json) 或 jdk(java原生序列化)
+     */
+    private String format = "smile";
+
+    /**
+     * 序列化后超过该字节数时进行压缩，小于等于0时不压缩
+     */
+    private int compressThreshold = 1024;
+
+}
@@ -0,0 +1,17 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.virtual-threads")
+@Data
+public class VirtualThreadProperties {
+
+    /**
+     * 是否使用虚拟线程处理请求、定时任务和WebSocket推送，需要运行在JDK21及以上，否则仍使用平台线程
+     */
+    private boolean enabled = false;
+
+}
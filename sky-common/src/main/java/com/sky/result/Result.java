@@ -29,7 +29,7 @@ public class Result<T> implements Serializable {
     }
 
     public static <T> Result<T> error(String msg) {
-        Result result = new Result();
+        Result<T> result = new Result<T>();
         result.msg = msg;
         result.code = 0;
         return result;
@@ -1,17 +1,25 @@
 package com.sky.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.HttpClientProperties;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
@@ -19,13 +27,79 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Http工具类
+ * 所有请求共用一个带连接池的HttpClient，连接在请求之间保活复用，避免每次请求都重新进行TCP和TLS握手
+ * 连接池由HttpClientConfiguration在启动时按配置创建，未配置时在第一次请求时按默认配置创建
  */
+@Slf4j
 public class HttpClientUtil {
 
-    static final  int TIMEOUT_MSEC = 5 * 1000;
+    private static volatile PoolingHttpClientConnectionManager connectionManager;
+
+    private static volatile CloseableHttpClient httpClient;
+
+    private static volatile RequestConfig requestConfig;
+
+    //始终指向当前连接池的视图，重新configure后指标不会停留在已关闭的旧连接池上
+    private static final ConnPoolControl<HttpRoute> CONNECTION_POOL = new CurrentConnectionPool();
+
+    /**
+     * 按配置重建共享的连接池和HttpClient，旧的HttpClient会被关闭
+     * @param properties
+     */
+    public static synchronized void configure(HttpClientProperties properties) {
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(properties.getMaxTotal());
+        manager.setDefaultMaxPerRoute(properties.getMaxPerRoute());
+        manager.setValidateAfterInactivity(properties.getValidateAfterInactivity());
+
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setConnectionRequestTimeout(properties.getConnectionRequestTimeout())
+                .setSocketTimeout(properties.getSocketTimeout()).build();
+
+        long keepAlive = properties.getKeepAlive();
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(config)
+                //优先使用服务端Keep-Alive头中的timeout，没有时使用配置的默认保活时间
+                .setKeepAliveStrategy((response, context) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration > 0 ? duration : keepAlive;
+                })
+                //后台线程定期关闭过期和空闲的连接
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getMaxIdleTime(), TimeUnit.MILLISECONDS)
+                .build();
+
+        CloseableHttpClient old = httpClient;
+        connectionManager = manager;
+        requestConfig = config;
+        httpClient = client;
+        closeQuietly(old);
+    }
+
+    /**
+     * 获取共享连接池的视图，用于暴露连接池指标
+     * 视图每次都读取当前的连接池，连接池被重建后无需重新绑定，还没有创建或已关闭时统计值都为0
+     * @return
+     */
+    public static ConnPoolControl<HttpRoute> getConnectionPool() {
+        return CONNECTION_POOL;
+    }
+
+    /**
+     * 关闭共享的HttpClient及其连接池
+     */
+    public static synchronized void shutdown() {
+        closeQuietly(httpClient);
+        httpClient = null;
+        connectionManager = null;
+        requestConfig = null;
+    }
 
     /**
      * 发送GET方式请求
@@ -34,11 +108,7 @@ public class HttpClientUtil {
      * @return
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
         String result = "";
-        CloseableHttpResponse response = null;
 
         try{
             URIBuilder builder = new URIBuilder(url);
@@ -53,21 +123,17 @@ public class HttpClientUtil {
             HttpGet httpGet = new HttpGet(uri);
 
             //发送请求
-            response = httpClient.execute(httpGet);
-
-            //判断响应状态
-            if(response.getStatusLine().getStatusCode() == 200){
-                result = EntityUtils.toString(response.getEntity(),"UTF-8");
+            try (CloseableHttpResponse response = execute(httpGet)) {
+                //判断响应状态
+                if(response.getStatusLine().getStatusCode() == 200){
+                    result = EntityUtils.toString(response.getEntity(),"UTF-8");
+                }else {
+                    //读完响应体，连接才能归还连接池复用
+                    EntityUtils.consume(response.getEntity());
+                }
             }
         }catch (Exception e){
-            e.printStackTrace();
-        }finally {
-            try {
-                response.close();
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            log.error("发送GET请求失败：{}", url, e);
         }
 
         return result;
@@ -81,43 +147,24 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        CloseableHttpResponse response = null;
-        String resultString = "";
-
-        try {
-            // 创建Http Post请求
-            HttpPost httpPost = new HttpPost(url);
-
-            // 创建参数列表
-            if (paramMap != null) {
-                List<NameValuePair> paramList = new ArrayList();
-                for (Map.Entry<String, String> param : paramMap.entrySet()) {
-                    paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
-                }
-                // 模拟表单
-                UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
-                httpPost.setEntity(entity);
-            }
-
-            httpPost.setConfig(builderRequestConfig());
+        // 创建Http Post请求
+        HttpPost httpPost = new HttpPost(url);
 
-            // 执行http请求
-            response = httpClient.execute(httpPost);
-
-            resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+        // 创建参数列表
+        if (paramMap != null) {
+            List<NameValuePair> paramList = new ArrayList<>();
+            for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
             }
+            // 模拟表单
+            UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
+            httpPost.setEntity(entity);
         }
 
-        return resultString;
+        // 执行http请求
+        try (CloseableHttpResponse response = execute(httpPost)) {
+            return EntityUtils.toString(response.getEntity(), "UTF-8");
+        }
     }
 
     /**
@@ -128,52 +175,117 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        CloseableHttpResponse response = null;
-        String resultString = "";
+        // 创建Http Post请求
+        HttpPost httpPost = new HttpPost(url);
 
-        try {
-            // 创建Http Post请求
-            HttpPost httpPost = new HttpPost(url);
-
-            if (paramMap != null) {
-                //构造json格式数据
-                JSONObject jsonObject = new JSONObject();
-                for (Map.Entry<String, String> param : paramMap.entrySet()) {
-                    jsonObject.put(param.getKey(),param.getValue());
-                }
-                StringEntity entity = new StringEntity(jsonObject.toString(),"utf-8");
-                //设置请求编码
-                entity.setContentEncoding("utf-8");
-                //设置数据类型
-                entity.setContentType("application/json");
-                httpPost.setEntity(entity);
+        if (paramMap != null) {
+            //构造json格式数据
+            JSONObject jsonObject = new JSONObject();
+            for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                jsonObject.put(param.getKey(),param.getValue());
             }
+            StringEntity entity = new StringEntity(jsonObject.toString(),"utf-8");
+            //设置请求编码
+            entity.setContentEncoding("utf-8");
+            //设置数据类型
+            entity.setContentType("application/json");
+            httpPost.setEntity(entity);
+        }
 
-            httpPost.setConfig(builderRequestConfig());
+        // 执行http请求
+        try (CloseableHttpResponse response = execute(httpPost)) {
+            return EntityUtils.toString(response.getEntity(), "UTF-8");
+        }
+    }
 
-            // 执行http请求
-            response = httpClient.execute(httpPost);
+    private static CloseableHttpResponse execute(HttpRequestBase request) throws IOException {
+        CloseableHttpClient client = client();
+        request.setConfig(requestConfig);
+        return client.execute(request);
+    }
 
-            resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+    //获取共享的HttpClient，还没有创建时按默认配置创建
+    private static CloseableHttpClient client() {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (HttpClientUtil.class) {
+                if (httpClient == null) {
+                    configure(new HttpClientProperties());
+                }
+                client = httpClient;
             }
         }
+        return client;
+    }
 
-        return resultString;
+    private static void closeQuietly(CloseableHttpClient client) {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.warn("关闭HttpClient失败", e);
+        }
     }
-    private static RequestConfig builderRequestConfig() {
-        return RequestConfig.custom()
-                .setConnectTimeout(TIMEOUT_MSEC)
-                .setConnectionRequestTimeout(TIMEOUT_MSEC)
-                .setSocketTimeout(TIMEOUT_MSEC).build();
+
+    /**
+     * 委托给当前连接池的ConnPoolControl
+     */
+    private static class CurrentConnectionPool implements ConnPoolControl<HttpRoute> {
+
+        private static final PoolStats EMPTY = new PoolStats(0, 0, 0, 0);
+
+        @Override
+        public void setMaxTotal(int max) {
+            current().setMaxTotal(max);
+        }
+
+        @Override
+        public int getMaxTotal() {
+            PoolingHttpClientConnectionManager manager = connectionManager;
+            return manager == null ? 0 : manager.getMaxTotal();
+        }
+
+        @Override
+        public void setDefaultMaxPerRoute(int max) {
+            current().setDefaultMaxPerRoute(max);
+        }
+
+        @Override
+        public int getDefaultMaxPerRoute() {
+            PoolingHttpClientConnectionManager manager = connectionManager;
+            return manager == null ? 0 : manager.getDefaultMaxPerRoute();
+        }
+
+        @Override
+        public void setMaxPerRoute(HttpRoute route, int max) {
+            current().setMaxPerRoute(route, max);
+        }
+
+        @Override
+        public int getMaxPerRoute(HttpRoute route) {
+            PoolingHttpClientConnectionManager manager = connectionManager;
+            return manager == null ? 0 : manager.getMaxPerRoute(route);
+        }
+
+        @Override
+        public PoolStats getTotalStats() {
+            PoolingHttpClientConnectionManager manager = connectionManager;
+            return manager == null ? EMPTY : manager.getTotalStats();
+        }
+
+        @Override
+        public PoolStats getStats(HttpRoute route) {
+            PoolingHttpClientConnectionManager manager = connectionManager;
+            return manager == null ? EMPTY : manager.getStats(route);
+        }
+
+        //修改配置时连接池还没有创建则按默认配置创建
+        private static PoolingHttpClientConnectionManager current() {
+            client();
+            return connectionManager;
+        }
     }
 
 }
@@ -0,0 +1,71 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法订单号生成器，无锁实现
+ * 订单号结构：41位时间戳(毫秒) + 10位机器id + 12位序列号
+ * 同一毫秒内序列号用尽或时钟回拨时，借用下一毫秒继续生成，不阻塞、不重复
+ */
+public class SnowflakeOrderNumberGenerator implements OrderNumberGenerator {
+
+    //起始时间 2023-01-01 00:00:00 UTC
+    private static final long EPOCH = 1672531200000L;
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long workerId;
+
+    //高位为时间戳，低12位为序列号，通过CAS整体更新
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param workerId 机器id，取值范围0~1023，集群中每个节点必须不同
+     */
+    public SnowflakeOrderNumberGenerator(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId必须在0到" + MAX_WORKER_ID + "之间：" + workerId);
+        }
+        this.workerId = workerId;
+    }
+
+    public String nextNumber() {
+        return String.valueOf(nextId());
+    }
+
+    /**
+     * 生成下一个id
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long now = System.currentTimeMillis() - EPOCH;
+
+            long next;
+            if (now > lastTimestamp) {
+                //进入新的毫秒，序列号从0开始
+                next = now << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                //同一毫秒（或时钟回拨），序列号加一
+                next = last + 1;
+            } else {
+                //序列号用尽，借用下一毫秒
+                next = (lastTimestamp + 1) << SEQUENCE_BITS;
+            }
+
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & SEQUENCE_MASK;
+                return (timestamp << (WORKER_ID_BITS + SEQUENCE_BITS))
+                        | (workerId << SEQUENCE_BITS)
+                        | sequence;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.sky.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 虚拟线程工具类
+ * 项目按Java 8编译，虚拟线程相关的API(JDK21)通过反射调用，运行在低版本JDK上时isSupported返回false
+ */
+public class VirtualThreadUtil {
+
+    private static final Method OF_VIRTUAL;
+
+    private static final Method NAME;
+
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            factory = builderClass.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            //当前JDK不支持虚拟线程
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     * @return
+     */
+    public static boolean isSupported() {
+        return FACTORY != null;
+    }
+
+    /**
+     * 创建虚拟线程工厂，线程名为前缀加递增序号
+     * @param namePrefix
+     * @return
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("当前JDK不支持虚拟线程：" + System.getProperty("java.version"));
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = NAME.invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 创建线程工厂，preferVirtual为true且当前JDK支持虚拟线程时创建虚拟线程，否则创建守护平台线程
+     * @param namePrefix 线程名前缀，线程名为前缀加递增序号
+     * @param preferVirtual
+     * @return
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix, boolean preferVirtual) {
+        if (preferVirtual && isSupported()) {
+            return newThreadFactory(namePrefix);
+        }
+        AtomicLong count = new AtomicLong();
+        return r -> {
+            Thread thread = new Thread(r, namePrefix + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器
+     * @param namePrefix
+     * @return
+     */
+    public static Executor newExecutor(String namePrefix) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix);
+        return command -> threadFactory.newThread(command).start();
+    }
+
+}
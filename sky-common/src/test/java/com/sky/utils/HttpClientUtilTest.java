@@ -0,0 +1,180 @@
+package com.sky.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.HttpClientProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 使用本地HttpServer作为桩服务，通过客户端端口判断请求是否复用了同一个连接
+ */
+class HttpClientUtilTest {
+
+    private static HttpServer server;
+
+    private static ExecutorService serverExecutor;
+
+    private static String baseUrl;
+
+    //收到请求的客户端端口，同一个端口说明复用了同一个连接
+    private static final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            respond(exchange, 200, query == null ? "" : query);
+        });
+        server.createContext("/json", exchange -> respond(exchange, 200, read(exchange.getRequestBody())));
+        server.createContext("/error", exchange -> respond(exchange, 500, "error"));
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdown();
+        HttpClientUtil.shutdown();
+    }
+
+    @BeforeEach
+    void setUp() {
+        HttpClientUtil.configure(new HttpClientProperties());
+        clientPorts.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        HttpClientUtil.shutdown();
+    }
+
+    @Test
+    void reusesConnectionAcrossRequests() {
+        long begin = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            assertEquals("n=" + i, HttpClientUtil.doGet(baseUrl + "/echo", Collections.singletonMap("n", String.valueOf(i))));
+        }
+        long micros = (System.nanoTime() - begin) / 1000 / 50;
+        System.out.println("平均请求耗时(微秒)：" + micros);
+
+        //串行请求只建立一个连接
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    void reusesConnectionAfterErrorResponse() {
+        assertEquals("", HttpClientUtil.doGet(baseUrl + "/error", null));
+        assertEquals("", HttpClientUtil.doGet(baseUrl + "/error", null));
+        assertEquals("a=1", HttpClientUtil.doGet(baseUrl + "/echo", Collections.singletonMap("a", "1")));
+
+        //非200的响应体被读完后连接仍然归还连接池
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    void boundsConnectionsUnderConcurrency() throws Exception {
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxPerRoute(4);
+        HttpClientUtil.configure(properties);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String value = String.valueOf(i);
+                futures.add(executor.submit(() -> HttpClientUtil.doGet(baseUrl + "/echo", Collections.singletonMap("n", value))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals("n=" + i, futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        //连接数不超过每个路由的最大连接数
+        assertTrue(clientPorts.size() <= 4, "connections: " + clientPorts.size());
+    }
+
+    @Test
+    void postsJson() throws IOException {
+        String body = HttpClientUtil.doPost4Json(baseUrl + "/json", Collections.singletonMap("code", "abc"));
+
+        Map<?, ?> json = JSON.parseObject(body, Map.class);
+        assertEquals("abc", json.get("code"));
+    }
+
+    @Test
+    void createsClientLazilyAfterShutdown() {
+        HttpClientUtil.shutdown();
+
+        assertEquals(0, HttpClientUtil.getConnectionPool().getTotalStats().getMax());
+
+        assertEquals("a=1", HttpClientUtil.doGet(baseUrl + "/echo", Collections.singletonMap("a", "1")));
+        assertEquals(1, HttpClientUtil.getConnectionPool().getTotalStats().getAvailable());
+    }
+
+    @Test
+    void connectionPoolFollowsReconfigure() {
+        ConnPoolControl<HttpRoute> pool = HttpClientUtil.getConnectionPool();
+        HttpClientUtil.doGet(baseUrl + "/echo", null);
+        assertEquals(1, pool.getTotalStats().getAvailable());
+
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxTotal(7);
+        HttpClientUtil.configure(properties);
+
+        //同一个视图读到的是新连接池的配置和统计，旧连接池的连接已随旧HttpClient关闭
+        assertEquals(7, pool.getMaxTotal());
+        assertEquals(0, pool.getTotalStats().getAvailable());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        read(exchange.getRequestBody());
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
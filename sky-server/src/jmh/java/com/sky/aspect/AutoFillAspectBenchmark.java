@@ -0,0 +1,79 @@
+package com.sky.aspect;
+
+import com.sky.constant.AutoFillConstant;
+import com.sky.context.BaseContext;
+import com.sky.entity.Category;
+import com.sky.mapper.CategoryMapper;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * insert时公共字段填充的耗时：每次反射查找setter，对比AutoFillAspect缓存的方法句柄
+ * 运行：mvn -Pjmh -pl sky-server test-compile exec:exec -Djmh.include=AutoFillAspectBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoFillAspectBenchmark {
+
+    private final AutoFillAspect autoFillAspect = new AutoFillAspect();
+
+    private final Category category = new Category();
+
+    private JoinPoint joinPoint;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        BaseContext.setCurrentId(1L);
+        Method insert = CategoryMapper.class.getMethod("insert", Category.class);
+        Object[] args = {category};
+        //只返回固定值的连接点，两个基准都不包含Spring代理的开销
+        MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MethodSignature.class}, (proxy, method, methodArgs) -> insert);
+        joinPoint = (JoinPoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{JoinPoint.class},
+                (proxy, method, methodArgs) -> "getSignature".equals(method.getName()) ? signature : args);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Benchmark
+    public Category reflectEveryCall() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        Long currentId = BaseContext.getCurrentId();
+        Class<?> entityClass = category.getClass();
+        entityClass.getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class).invoke(category, now);
+        entityClass.getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class).invoke(category, now);
+        entityClass.getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class).invoke(category, currentId);
+        entityClass.getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class).invoke(category, currentId);
+        return category;
+    }
+
+    @Benchmark
+    public Category cachedHandles() {
+        autoFillAspect.autoFill(joinPoint);
+        return category;
+    }
+}
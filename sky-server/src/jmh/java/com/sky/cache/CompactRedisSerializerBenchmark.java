@@ -0,0 +1,87 @@
+package com.sky.cache;
+
+import com.sky.entity.DishFlavor;
+import com.sky.vo.DishVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis value序列化耗时：一个分类下的菜品列表，对比jdk和smile编码以及是否压缩
+ * 运行：mvn -Pjmh -pl sky-server test-compile exec:exec -Djmh.include=CompactRedisSerializerBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactRedisSerializerBenchmark {
+
+    @Param({"jdk", "smile"})
+    private String format;
+
+    //0表示不压缩
+    @Param({"0", "1024"})
+    private int compressThreshold;
+
+    @Param({"20"})
+    private int dishCount;
+
+    private CompactRedisSerializer serializer;
+
+    private List<DishVO> dishes;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        RedisSerializer<Object> codec = "jdk".equals(format) ? new JdkSerializationRedisSerializer() : new SmileRedisSerializer();
+        serializer = new CompactRedisSerializer(codec, compressThreshold);
+
+        dishes = new ArrayList<>(dishCount);
+        for (long i = 1; i <= dishCount; i++) {
+            dishes.add(DishVO.builder()
+                    .id(i)
+                    .name("菜品" + i)
+                    .categoryId(1L)
+                    .price(new BigDecimal("28.00"))
+                    .image("https://sky-take-out.oss-cn-beijing.aliyuncs.com/dish-" + i + ".png")
+                    .description("招牌菜品，选用新鲜食材现做")
+                    .status(1)
+                    .updateTime(LocalDateTime.of(2026, 1, 1, 12, 0))
+                    .flavors(Arrays.asList(
+                            DishFlavor.builder().dishId(i).name("辣度").value("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]").build(),
+                            DishFlavor.builder().dishId(i).name("忌口").value("[\"不要葱\",\"不要蒜\",\"不要香菜\"]").build()))
+                    .build());
+        }
+        bytes = serializer.serialize(dishes);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(dishes);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+}
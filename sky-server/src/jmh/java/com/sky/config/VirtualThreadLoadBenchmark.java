@@ -0,0 +1,139 @@
+package com.sky.config;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+import com.sky.utils.VirtualThreadUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测tomcat请求处理：400个并发请求，每个请求阻塞20毫秒，对比平台线程池和虚拟线程
+ * blocking=monitor时在synchronized中阻塞，模拟8.0.33之前的mysql驱动在socket IO期间持有监视器
+ * virtualThreads=true需要运行在JDK21及以上
+ * 运行：mvn -Pjmh -pl sky-server test-compile exec:exec -Djmh.include=VirtualThreadLoadBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VirtualThreadLoadBenchmark {
+
+    private static final int CONCURRENCY = 400;
+
+    private static final long BLOCK_MILLIS = 20;
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"sleep", "monitor"})
+    public String blocking;
+
+    private WebServer webServer;
+
+    private ExecutorService clients;
+
+    private String url;
+
+    @Setup
+    public void setUp() {
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        if (virtualThreads) {
+            if (!VirtualThreadUtil.isSupported()) {
+                throw new IllegalStateException("当前JDK不支持虚拟线程：" + System.getProperty("java.version"));
+            }
+            factory.addProtocolHandlerCustomizers(new VirtualThreadConfiguration().virtualThreadProtocolHandlerCustomizer());
+        }
+        BlockingServlet servlet = new BlockingServlet("monitor".equals(blocking));
+        webServer = factory.getWebServer(servletContext ->
+                servletContext.addServlet("blocking", servlet).addMapping("/blocking"));
+        webServer.start();
+        url = "http://127.0.0.1:" + webServer.getPort() + "/blocking";
+
+        //客户端连接数不能成为瓶颈
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxTotal(CONCURRENCY);
+        properties.setMaxPerRoute(CONCURRENCY);
+        HttpClientUtil.configure(properties);
+        clients = Executors.newFixedThreadPool(CONCURRENCY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        clients.shutdownNow();
+        HttpClientUtil.shutdown();
+        webServer.stop();
+    }
+
+    @Benchmark
+    public int concurrentRequests() throws Exception {
+        List<Future<String>> futures = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            futures.add(clients.submit(() -> HttpClientUtil.doGet(url, null)));
+        }
+        int succeeded = 0;
+        for (Future<String> future : futures) {
+            if ("ok".equals(future.get())) {
+                succeeded++;
+            }
+        }
+        if (succeeded != CONCURRENCY) {
+            throw new IllegalStateException("请求失败：" + (CONCURRENCY - succeeded));
+        }
+        return succeeded;
+    }
+
+    /**
+     * 模拟一次阻塞的数据库调用
+     */
+    private static class BlockingServlet extends HttpServlet {
+
+        private final boolean holdMonitor;
+
+        private BlockingServlet(boolean holdMonitor) {
+            this.holdMonitor = holdMonitor;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            try {
+                if (holdMonitor) {
+                    //每个请求一个锁对象，没有竞争，只有持有监视器期间阻塞
+                    Object connectionMutex = new Object();
+                    synchronized (connectionMutex) {
+                        Thread.sleep(BLOCK_MILLIS);
+                    }
+                } else {
+                    Thread.sleep(BLOCK_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            resp.getWriter().write("ok");
+        }
+    }
+}
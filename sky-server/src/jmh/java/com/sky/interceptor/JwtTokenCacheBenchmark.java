@@ -0,0 +1,57 @@
+package com.sky.interceptor;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.utils.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拦截器校验令牌的耗时：每次解析jwt，对比命中JwtTokenCache
+ * 运行：mvn -Pjmh -pl sky-server test-compile exec:exec -Djmh.include=JwtTokenCacheBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtTokenCacheBenchmark {
+
+    private static final String SECRET_KEY = "itcast";
+
+    private final JwtTokenCache jwtTokenCache = new JwtTokenCache();
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.EMP_ID, 1L);
+        token = JwtUtil.createJWT(SECRET_KEY, TimeUnit.HOURS.toMillis(2), claims);
+        jwtTokenCache.verify(SECRET_KEY, token, JwtClaimsConstant.EMP_ID);
+    }
+
+    @Benchmark
+    public Long parseEveryRequest() {
+        return Long.valueOf(JwtUtil.parseJWT(SECRET_KEY, token).get(JwtClaimsConstant.EMP_ID).toString());
+    }
+
+    @Benchmark
+    public Long cachedToken() {
+        return jwtTokenCache.verify(SECRET_KEY, token, JwtClaimsConstant.EMP_ID);
+    }
+}
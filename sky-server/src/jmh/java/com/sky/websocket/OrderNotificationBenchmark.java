@@ -0,0 +1,47 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单消息编码耗时：OrderNotification直接拼接json，对比原来的HashMap + fastjson
+ * 运行：mvn -Pjmh -pl sky-server test-compile exec:exec -Djmh.include=OrderNotificationBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderNotificationBenchmark {
+
+    private Long orderId = 1024L;
+
+    private String orderNumber = "1751234567890123456";
+
+    @Benchmark
+    public String orderNotification() {
+        return OrderNotification.newOrder(orderId, orderNumber).toJson();
+    }
+
+    @Benchmark
+    public String hashMapFastjson() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", OrderNotification.TYPE_ORDER);
+        map.put("orderId", orderId);
+        map.put("content", "订单号：" + orderNumber);
+        return JSON.toJSONString(map);
+    }
+}
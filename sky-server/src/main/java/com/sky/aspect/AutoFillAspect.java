@@ -3,21 +3,21 @@ package com.sky.aspect;
 import com.sky.annotation.AutoFill;
 import com.sky.constant.AutoFillConstant;
 import com.sky.context.BaseContext;
-import com.sky.entity.Employee;
 import com.sky.enumeration.OperationType;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -28,6 +28,9 @@ import java.time.LocalTime;
 @Slf4j
 public class AutoFillAspect {
 
+    //实体类 -> 公共字段填充器，每个实体类只查找一次setter方法
+    private final Map<Class<?>, Filler> fillers = new ConcurrentHashMap<>();
+
     /**
      * 切入点
      */
@@ -39,8 +42,6 @@ public class AutoFillAspect {
      */
     @Before("autoFillPointCut()")
     public void autoFill(JoinPoint joinPoint){
-        log.info("开始进行公共字段的自动填充...");
-
         //获取到当前被拦截的方法上的数据库操作类型
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();//方法签名对象
         AutoFill autoFill = signature.getMethod().getAnnotation(AutoFill.class);//获得方法上的注解对象
@@ -52,45 +53,56 @@ public class AutoFillAspect {
             return;
         }
         Object entity = args[0];
+        log.debug("公共字段自动填充：{} {}", operationType, entity.getClass().getSimpleName());
 
         //准备赋值的数据
         LocalDateTime now = LocalDateTime.now();
         Long currentId = BaseContext.getCurrentId();
 
-        //根据当前操作类型为对应的属性进行赋值（通过反射）
-        if (operationType == OperationType.INSERT){
-            //为四个公共字段赋值
-            try {
-                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-
-                //通过反射为对象属性赋值
-                setCreateTime.invoke(entity, now);
-                setUpdateTime.invoke(entity, now);
-                setCreateUser.invoke(entity, currentId);
-                setUpdateUser.invoke(entity, currentId);
-
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+        //根据当前操作类型为对应的属性进行赋值
+        Filler filler = fillers.computeIfAbsent(entity.getClass(), Filler::new);
+        try {
+            if (operationType == OperationType.INSERT){
+                //为四个公共字段赋值
+                filler.setCreateTime.invokeExact(entity, (Object) now);
+                filler.setUpdateTime.invokeExact(entity, (Object) now);
+                filler.setCreateUser.invokeExact(entity, (Object) currentId);
+                filler.setUpdateUser.invokeExact(entity, (Object) currentId);
+            }else if (operationType == OperationType.UPDATE){
+                //为两个公共字段赋值
+                filler.setUpdateTime.invokeExact(entity, (Object) now);
+                filler.setUpdateUser.invokeExact(entity, (Object) currentId);
             }
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-        }else if (operationType == OperationType.UPDATE){
-            //为两个公共字段赋值
-            try {
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-
-                //通过反射为对象属性赋值
-                setUpdateTime.invoke(entity, now);
-                setUpdateUser.invoke(entity, currentId);
+    /**
+     * 实体类公共字段的setter方法句柄，统一转换为(Object, Object)void类型以便通过invokeExact调用
+     */
+    private static class Filler {
+        private final MethodHandle setCreateTime;
+        private final MethodHandle setUpdateTime;
+        private final MethodHandle setCreateUser;
+        private final MethodHandle setUpdateUser;
+
+        private Filler(Class<?> entityClass) {
+            setCreateTime = findSetter(entityClass, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+            setUpdateTime = findSetter(entityClass, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+            setCreateUser = findSetter(entityClass, AutoFillConstant.SET_CREATE_USER, Long.class);
+            setUpdateUser = findSetter(entityClass, AutoFillConstant.SET_UPDATE_USER, Long.class);
+        }
 
-            } catch (Exception e) {
+        private static MethodHandle findSetter(Class<?> entityClass, String name, Class<?> type) {
+            try {
+                return MethodHandles.publicLookup()
+                        .findVirtual(entityClass, name, MethodType.methodType(void.class, type))
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (ReflectiveOperationException e) {
                 throw new RuntimeException(e);
             }
         }
-
     }
 
 }
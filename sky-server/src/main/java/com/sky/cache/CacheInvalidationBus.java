@@ -0,0 +1,70 @@
+package com.sky.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 本地缓存失效通知，通过redis发布订阅通知所有节点清理本地缓存
+ * 消息格式：缓存名称|key，key为*时表示清理该缓存的全部数据
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    public static final String CHANNEL = "sky_cache_invalidation";
+
+    public static final String ALL_KEYS = "*";
+
+    private static final String SEPARATOR = "|";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //缓存名称 -> 本地缓存清理方法
+    private final Map<String, Consumer<String>> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * 注册本地缓存的清理方法
+     * @param cacheName
+     * @param handler 参数为需要清理的key，为*时清理全部数据
+     */
+    public void register(String cacheName, Consumer<String> handler) {
+        handlers.put(cacheName, handler);
+    }
+
+    /**
+     * 通知所有节点清理本地缓存
+     * @param cacheName
+     * @param key
+     */
+    public void publish(String cacheName, Object key) {
+        stringRedisTemplate.convertAndSend(CHANNEL, cacheName + SEPARATOR + key);
+    }
+
+    /**
+     * 收到清理通知，清理本节点的本地缓存
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(SEPARATOR);
+        if (index < 0) {
+            return;
+        }
+        Consumer<String> handler = handlers.get(body.substring(0, index));
+        if (handler != null) {
+            log.debug("清理本地缓存：{}", body);
+            handler.accept(body.substring(index + 1));
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于redis hash的购物车，每个用户一个hash，通过HINCRBY原子修改商品数量
+ * hash key规则：shopping_cart_用户id
+ * field规则：n:商品标识 保存数量，i:商品标识 保存商品信息(json)
+ * 商品标识：菜品为 d菜品id:口味，套餐为 s套餐id
+ * 购物车发生变化的用户id记录在 shopping_cart_dirty 集合中，由定时任务写回shopping_cart表
+ * hash中始终有一个 loaded 字段，hash不存在(首次访问、过期或redis数据丢失)时先从shopping_cart表加载，
+ * 清空购物车时保留该字段，避免写回之前从数据库重新加载已清空的购物车
+ */
+@Component
+public class CartStore {
+
+    private static final String KEY_PREFIX = "shopping_cart_";
+    private static final String DIRTY_KEY = "shopping_cart_dirty";
+
+    private static final String NUMBER_PREFIX = "n:";
+    private static final String ITEM_PREFIX = "i:";
+    private static final String LOADED_FIELD = "loaded";
+
+    //脚本返回该值表示购物车尚未从数据库加载
+    private static final long NOT_LOADED = -1;
+
+    //购物车过期时间，每次修改时重新计算
+    private static final long TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    //数量加一并返回商品信息是否已存在
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+            "redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[3]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[4]) " +
+            "redis.call('SADD', KEYS[2], ARGV[5]) " +
+            "return redis.call('HEXISTS', KEYS[1], ARGV[2])", Long.class);
+
+    //数量减一，减到0时删除该商品，返回剩余数量
+    private static final RedisScript<Long> DECREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+            "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], -1) " +
+            "if n <= 0 then redis.call('HDEL', KEYS[1], ARGV[1], ARGV[2]) end " +
+            "redis.call('SADD', KEYS[2], ARGV[3]) " +
+            "return n", Long.class);
+
+    //hash不存在时写入从数据库加载的购物车，ARGV[1]为过期时间，ARGV[2]为loaded字段，之后依次为field和value
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[2], '1') " +
+            "for i = 3, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "return 1", Long.class);
+
+    //清空购物车，只保留loaded字段
+    private static final RedisScript<Long> CLEAR_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HSET', KEYS[1], ARGV[1], '1') " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "redis.call('SADD', KEYS[2], ARGV[3]) " +
+            "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    /**
+     * 商品数量增加
+     * @param userId
+     * @param cart 商品标识取自dishId、setmealId、dishFlavor
+     * @param number 增加的数量
+     * @return 商品信息是否已存在，不存在时需要调用putItem补充
+     */
+    public boolean increment(Long userId, ShoppingCart cart, int number) {
+        String line = getLine(cart);
+        List<String> keys = Arrays.asList(getKey(userId), DIRTY_KEY);
+        Object[] args = {NUMBER_PREFIX + line, ITEM_PREFIX + line, String.valueOf(number), String.valueOf(TTL_SECONDS), userId.toString()};
+        Long exists = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, args);
+        if (exists != null && exists == NOT_LOADED) {
+            load(userId);
+            exists = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys, args);
+        }
+        return exists != null && exists == 1;
+    }
+
+    /**
+     * 商品数量减一，数量为0时从购物车删除
+     * @param userId
+     * @param cart
+     */
+    public void decrement(Long userId, ShoppingCart cart) {
+        String line = getLine(cart);
+        List<String> keys = Arrays.asList(getKey(userId), DIRTY_KEY);
+        Object[] args = {NUMBER_PREFIX + line, ITEM_PREFIX + line, userId.toString()};
+        Long remaining = stringRedisTemplate.execute(DECREMENT_SCRIPT, keys, args);
+        if (remaining != null && remaining == NOT_LOADED) {
+            load(userId);
+            stringRedisTemplate.execute(DECREMENT_SCRIPT, keys, args);
+        }
+    }
+
+    /**
+     * 保存商品信息(名称、图片、金额等)，不包含数量
+     * @param userId
+     * @param cart
+     */
+    public void putItem(Long userId, ShoppingCart cart) {
+        stringRedisTemplate.opsForHash().put(getKey(userId), ITEM_PREFIX + getLine(cart), toItemJson(cart));
+    }
+
+    /**
+     * 从购物车删除一个商品
+     * @param userId
+     * @param cart
+     */
+    public void remove(Long userId, ShoppingCart cart) {
+        String line = getLine(cart);
+        stringRedisTemplate.opsForHash().delete(getKey(userId), NUMBER_PREFIX + line, ITEM_PREFIX + line);
+        stringRedisTemplate.opsForSet().add(DIRTY_KEY, userId.toString());
+    }
+
+    /**
+     * 查询用户购物车中的所有商品，商品信息缺失的商品只包含商品标识和数量
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(getKey(userId));
+        if (entries.isEmpty()) {
+            List<ShoppingCart> loaded = load(userId);
+            if (loaded != null) {
+                return loaded;
+            }
+            //其它请求已经加载，重新读取
+            entries = stringRedisTemplate.opsForHash().entries(getKey(userId));
+        }
+        List<ShoppingCart> list = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String field = (String) entry.getKey();
+            if (!field.startsWith(NUMBER_PREFIX)) {
+                continue;
+            }
+            int number = Integer.parseInt((String) entry.getValue());
+            if (number <= 0) {
+                continue;
+            }
+            String line = field.substring(NUMBER_PREFIX.length());
+            Object item = entries.get(ITEM_PREFIX + line);
+            ShoppingCart cart = item != null ? JSON.parseObject((String) item, ShoppingCart.class) : parseLine(line);
+            cart.setUserId(userId);
+            cart.setNumber(number);
+            list.add(cart);
+        }
+        return list;
+    }
+
+    /**
+     * 清空用户购物车
+     * @param userId
+     */
+    public void clear(Long userId) {
+        stringRedisTemplate.execute(CLEAR_SCRIPT, Arrays.asList(getKey(userId), DIRTY_KEY),
+                LOADED_FIELD, String.valueOf(TTL_SECONDS), userId.toString());
+    }
+
+    /**
+     * 取出一批购物车发生变化的用户id
+     * @param count
+     * @return
+     */
+    public List<Long> popDirtyUserIds(long count) {
+        List<String> ids = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, count);
+        List<Long> userIds = new ArrayList<>();
+        if (ids != null) {
+            for (String id : ids) {
+                userIds.add(Long.valueOf(id));
+            }
+        }
+        return userIds;
+    }
+
+    /**
+     * 重新标记购物车发生变化，写回失败时使用
+     * @param userId
+     */
+    public void markDirty(Long userId) {
+        stringRedisTemplate.opsForSet().add(DIRTY_KEY, userId.toString());
+    }
+
+    /**
+     * 从shopping_cart表加载用户购物车并写入redis
+     * @param userId
+     * @return 加载的购物车，redis中已存在该用户的购物车时返回null
+     */
+    private List<ShoppingCart> load(Long userId) {
+        List<ShoppingCart> list = shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        List<String> args = new ArrayList<>(list.size() * 4 + 2);
+        args.add(String.valueOf(TTL_SECONDS));
+        args.add(LOADED_FIELD);
+        for (ShoppingCart cart : list) {
+            String line = getLine(cart);
+            args.add(NUMBER_PREFIX + line);
+            args.add(String.valueOf(cart.getNumber()));
+            args.add(ITEM_PREFIX + line);
+            args.add(toItemJson(cart));
+        }
+        Long loaded = stringRedisTemplate.execute(LOAD_SCRIPT, Collections.singletonList(getKey(userId)), args.toArray());
+        return loaded != null && loaded == 1 ? list : null;
+    }
+
+    //商品信息(名称、图片、金额等)，不包含数量
+    private String toItemJson(ShoppingCart cart) {
+        ShoppingCart item = ShoppingCart.builder()
+                .name(cart.getName())
+                .image(cart.getImage())
+                .dishId(cart.getDishId())
+                .setmealId(cart.getSetmealId())
+                .dishFlavor(cart.getDishFlavor())
+                .amount(cart.getAmount())
+                .createTime(cart.getCreateTime())
+                .build();
+        return JSON.toJSONString(item);
+    }
+
+    private String getKey(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private String getLine(ShoppingCart cart) {
+        if (cart.getDishId() != null) {
+            String flavor = cart.getDishFlavor();
+            return "d" + cart.getDishId() + ":" + (flavor == null ? "" : flavor);
+        }
+        return "s" + cart.getSetmealId();
+    }
+
+    private ShoppingCart parseLine(String line) {
+        ShoppingCart cart = new ShoppingCart();
+        if (line.startsWith("d")) {
+            int index = line.indexOf(':');
+            cart.setDishId(Long.valueOf(line.substring(1, index)));
+            String flavor = line.substring(index + 1);
+            cart.setDishFlavor(flavor.isEmpty() ? null : flavor);
+        } else {
+            cart.setSetmealId(Long.valueOf(line.substring(1)));
+        }
+        return cart;
+    }
+}
@@ -0,0 +1,161 @@
+package com.sky.cache;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetMealMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 起售中菜品、套餐的内存快照，购物车和下单时直接从快照中获取商品的名称、图片和价格
+ * 快照构造完成后不再修改，管理端修改菜品或套餐后重新构造新的快照并整体替换(写时复制)，读取时无需加锁
+ * 修改通过CacheInvalidationBus通知所有节点刷新
+ */
+@Component
+@Slf4j
+public class CatalogSnapshot {
+
+    private static final String CACHE_NAME = "catalog";
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetMealMapper setMealMapper;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    //当前快照，整体替换保证读取时看到的是一致的数据
+    private volatile Snapshot snapshot;
+
+    //构造快照期间持有，构造时会查询数据库，用ReentrantLock而不是synchronized，避免虚拟线程阻塞时占住载体线程
+    private final Lock loadLock = new ReentrantLock();
+
+    /**
+     * 获取起售中的菜品，菜品不存在或已停售时返回null
+     * @param dishId
+     * @return
+     */
+    public Item getDish(long dishId) {
+        return current().dishes.get(dishId);
+    }
+
+    /**
+     * 获取起售中的套餐，套餐不存在或已停售时返回null
+     * @param setmealId
+     * @return
+     */
+    public Item getSetmeal(long setmealId) {
+        return current().setmeals.get(setmealId);
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheInvalidationBus.register(CACHE_NAME, key -> refreshLocal());
+    }
+
+    /**
+     * 刷新本节点的快照并通知其他节点刷新
+     */
+    public void refresh() {
+        refreshLocal();
+        cacheInvalidationBus.publish(CACHE_NAME, CacheInvalidationBus.ALL_KEYS);
+    }
+
+    /**
+     * 重新构造本节点的快照，构造失败时丢弃旧快照，下次读取时重新加载
+     */
+    private void refreshLocal() {
+        loadLock.lock();
+        try {
+            snapshot = load();
+        } catch (Exception e) {
+            log.error("刷新菜品、套餐快照失败", e);
+            snapshot = null;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            loadLock.lock();
+            try {
+                s = snapshot;
+                if (s == null) {
+                    s = load();
+                    snapshot = s;
+                }
+            } finally {
+                loadLock.unlock();
+            }
+        }
+        return s;
+    }
+
+    private Snapshot load() {
+        log.info("加载菜品、套餐快照...");
+
+        List<Dish> dishList = dishMapper.list(Dish.builder().status(StatusConstant.ENABLE).build());
+        LongObjectMap<Item> dishes = new LongObjectMap<>(dishList.size());
+        for (Dish dish : dishList) {
+            dishes.put(dish.getId(), new Item(dish.getName(), dish.getImage(), dish.getPrice()));
+        }
+
+        List<Setmeal> setmealList = setMealMapper.list(Setmeal.builder().status(StatusConstant.ENABLE).build());
+        LongObjectMap<Item> setmeals = new LongObjectMap<>(setmealList.size());
+        for (Setmeal setmeal : setmealList) {
+            setmeals.put(setmeal.getId(), new Item(setmeal.getName(), setmeal.getImage(), setmeal.getPrice()));
+        }
+
+        return new Snapshot(dishes, setmeals);
+    }
+
+    /**
+     * 快照中的商品信息
+     */
+    public static final class Item {
+        private final String name;
+        private final String image;
+        private final BigDecimal price;
+
+        private Item(String name, String image, BigDecimal price) {
+            this.name = name;
+            this.image = image;
+            this.price = price;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+    }
+
+    private static class Snapshot {
+        private final LongObjectMap<Item> dishes;
+        private final LongObjectMap<Item> setmeals;
+
+        private Snapshot(LongObjectMap<Item> dishes, LongObjectMap<Item> setmeals) {
+            this.dishes = dishes;
+            this.setmeals = setmeals;
+        }
+    }
+}
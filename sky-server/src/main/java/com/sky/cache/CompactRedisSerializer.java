@@ -0,0 +1,120 @@
+package com.sky.cache;
+
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * redis value序列化器：委托给具体的编码器进行序列化，超过阈值时进行压缩
+ * 数据格式：1字节头 + 数据，头为0表示未压缩，为1表示deflate压缩
+ * 以jdk序列化魔数开头的数据按旧格式读取，保证升级前写入的缓存仍能读取
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+
+    //jdk序列化数据的魔数 0xACED
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private final RedisSerializer<Object> codec;
+
+    private final int compressThreshold;
+
+    private final JdkSerializationRedisSerializer legacySerializer = new JdkSerializationRedisSerializer();
+
+    /**
+     * @param codec 实际的编码器
+     * @param compressThreshold 超过该字节数时压缩，小于等于0时不压缩
+     */
+    public CompactRedisSerializer(RedisSerializer<Object> codec, int compressThreshold) {
+        this.codec = codec;
+        this.compressThreshold = compressThreshold;
+    }
+
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] data = codec.serialize(value);
+        if (compressThreshold > 0 && data.length > compressThreshold) {
+            byte[] compressed = compress(data);
+            //压缩后更小时才使用压缩数据
+            if (compressed.length < data.length) {
+                return withHeader(DEFLATE, compressed);
+            }
+        }
+        return withHeader(RAW, data);
+    }
+
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+            return legacySerializer.deserialize(bytes);
+        }
+
+        byte[] data = Arrays.copyOfRange(bytes, 1, bytes.length);
+        if (bytes[0] == DEFLATE) {
+            data = decompress(data);
+        } else if (bytes[0] != RAW) {
+            throw new SerializationException("未知的redis数据格式：" + bytes[0]);
+        }
+        return codec.deserialize(data);
+    }
+
+    private byte[] withHeader(byte header, byte[] data) {
+        byte[] result = new byte[data.length + 1];
+        result[0] = header;
+        System.arraycopy(data, 0, result, 1, data.length);
+        return result;
+    }
+
+    private byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new SerializationException("redis压缩数据不完整");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new SerializationException("redis数据解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 用户端菜品缓存，按分类缓存起售中的菜品
+ * 一级缓存为进程内的caffeine缓存，二级缓存为redis，修改菜品时通过CacheInvalidationBus通知所有节点清理一级缓存
+ * redis key规则：dish_分类id_v版本号，每个分类有独立的版本号，修改菜品时递增对应分类的版本号使旧缓存失效，
+ * 旧版本的缓存不会再被读取，由过期时间自动清理，避免使用keys命令扫描redis
+ * 读取时通过lua脚本在一次请求中查询版本号和对应版本的缓存
+ */
+@Component
+@Slf4j
+public class DishCache {
+
+    private static final String CACHE_NAME = "dish";
+
+    private static final String KEY_PREFIX = "dish_";
+    private static final String VERSION_KEY_PREFIX = "dish_version_";
+
+    //引入版本号之前的缓存key为 dish_分类id，没有过期时间，启动时清理一次，清理完成后写入该标记
+    private static final String LEGACY_CLEANED_KEY = "dish_legacy_cleaned";
+    private static final Pattern LEGACY_KEY_PATTERN = Pattern.compile("dish_\\d+");
+
+    //根据分类的版本号读取对应版本的缓存，KEYS[1]为版本号key，ARGV[1]为缓存key前缀(dish_分类id_v)
+    private static final RedisScript<Object> GET_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('GET', KEYS[1]) or '0' " +
+            "return redis.call('GET', ARGV[1] .. version)", Object.class);
+
+    //缓存过期时间，保证失效后的旧版本缓存能够被清理
+    private static final long TTL_HOURS = 24;
+
+    //本地缓存最多保存的分类数和过期时间(分钟)
+    private static final long LOCAL_MAXIMUM_SIZE = 1000;
+    private static final long LOCAL_EXPIRE_MINUTES = 10;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisSerializer<Object> redisValueSerializer;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private final com.github.benmanes.caffeine.cache.Cache<Long, List<DishVO>> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAXIMUM_SIZE)
+            .expireAfterWrite(LOCAL_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    //本地缓存每次被清理时加一，用于丢弃清理之前从redis或数据库读取的旧数据
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cacheInvalidationBus.register(CACHE_NAME, this::invalidateLocal);
+        try {
+            cleanLegacyKeys();
+        } catch (Exception e) {
+            log.warn("清理旧版本菜品缓存失败", e);
+        }
+    }
+
+    /**
+     * 查询分类下的菜品，依次查询本地缓存、redis，都不存在时通过loader查询数据库并放入缓存
+     * @param categoryId
+     * @param loader
+     * @return
+     */
+    public List<DishVO> get(Long categoryId, Supplier<List<DishVO>> loader) {
+        //没有指定分类时不缓存，直接查询数据库（caffeine不允许null作为key）
+        if (categoryId == null) {
+            return loader.get();
+        }
+
+        List<DishVO> list = localCache.getIfPresent(categoryId);
+        if (list != null) {
+            return list;
+        }
+
+        long current = generation.get();
+        list = toDishList(redisTemplate.execute(GET_SCRIPT, RedisSerializer.string(), redisValueSerializer,
+                Collections.singletonList(VERSION_KEY_PREFIX + categoryId), KEY_PREFIX + categoryId + "_v"));
+        if (list == null || list.size() == 0) {
+            //先读取版本号再查询数据库，查询期间菜品被修改时写入的是旧版本的key，不会覆盖新数据
+            String key = getKey(categoryId);
+            list = loader.get();
+            redisTemplate.opsForValue().set(key, list, TTL_HOURS, TimeUnit.HOURS);
+        }
+
+        //读取期间本地缓存没有被清理时才放入本地缓存
+        if (generation.get() == current) {
+            localCache.put(categoryId, list);
+        }
+        return list;
+    }
+
+    /**
+     * 使指定分类的菜品缓存失效
+     * @param categoryIds
+     */
+    public void evict(Collection<Long> categoryIds) {
+        for (Long categoryId : new HashSet<>(categoryIds)) {
+            if (categoryId != null) {
+                stringRedisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + categoryId);
+                invalidateLocal(categoryId.toString());
+                cacheInvalidationBus.publish(CACHE_NAME, categoryId);
+            }
+        }
+        log.info("清理菜品缓存，分类id：{}", categoryIds);
+    }
+
+    /**
+     * 把redis中读取的数据转换为菜品列表，逐个元素检查类型
+     * @param cached
+     * @return
+     */
+    private static List<DishVO> toDishList(Object cached) {
+        if (!(cached instanceof List)) {
+            return null;
+        }
+        List<?> values = (List<?>) cached;
+        List<DishVO> list = new ArrayList<>(values.size());
+        for (Object value : values) {
+            list.add((DishVO) value);
+        }
+        return list;
+    }
+
+    private String getKey(Long categoryId) {
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + categoryId);
+        return KEY_PREFIX + categoryId + "_v" + (version == null ? "0" : version);
+    }
+
+    /**
+     * 删除引入版本号之前写入的菜品缓存，只在第一次启动时扫描一次
+     */
+    private void cleanLegacyKeys() {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(LEGACY_CLEANED_KEY, "1"))) {
+            return;
+        }
+        List<String> legacyKeys = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (LEGACY_KEY_PATTERN.matcher(key).matches()) {
+                    legacyKeys.add(key);
+                }
+            }
+        } catch (RuntimeException e) {
+            //扫描失败时删除标记，下次启动重新清理
+            stringRedisTemplate.delete(LEGACY_CLEANED_KEY);
+            throw e;
+        }
+        if (!legacyKeys.isEmpty()) {
+            stringRedisTemplate.delete(legacyKeys);
+        }
+        log.info("清理旧版本菜品缓存：{}个", legacyKeys.size());
+    }
+
+    /**
+     * 清理本节点的本地缓存
+     * @param categoryId 为*时清理全部数据
+     */
+    private void invalidateLocal(String categoryId) {
+        generation.incrementAndGet();
+        if (CacheInvalidationBus.ALL_KEYS.equals(categoryId)) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(Long.valueOf(categoryId));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.sky.cache;
+
+/**
+ * 以long为key的只读哈希表，使用开放寻址法，key不装箱
+ * 构造完成后不再修改，可以通过volatile引用安全地发布给多个线程读取
+ * @param <V>
+ */
+public final class LongObjectMap<V> {
+
+    private final long[] keys;
+
+    //value为null表示该位置为空
+    private final Object[] values;
+
+    private final int mask;
+
+    private int size;
+
+    /**
+     * @param expectedSize 预计保存的数据量
+     */
+    LongObjectMap(int expectedSize) {
+        //保证装载因子不超过0.5
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 放入数据，只在构造阶段调用
+     * @param key
+     * @param value 不能为null
+     */
+    void put(long key, V value) {
+        int index = indexOf(key);
+        if (values[index] == null) {
+            if (size + 1 > (mask + 1) / 2) {
+                throw new IllegalStateException("超出LongObjectMap的容量");
+            }
+            keys[index] = key;
+            size++;
+        }
+        values[index] = value;
+    }
+
+    /**
+     * 根据key获取数据，不存在时返回null
+     * @param key
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[indexOf(key)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //返回key所在的位置，key不存在时返回可以放入的空位置
+    private int indexOf(long key) {
+        int index = hash(key) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,76 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 基于smile(二进制json)的redis value序列化器
+ * 重复出现的属性名和类型名只写一次，体积比jdk序列化小得多，类增减字段时也能正常反序列化
+ */
+public class SmileRedisSerializer implements RedisSerializer<Object> {
+
+    //只允许反序列化项目内和jdk基础类型，防止redis中的数据构造任意类
+    private static final PolymorphicTypeValidator TYPE_VALIDATOR = BasicPolymorphicTypeValidator.builder()
+            .allowIfSubType("com.sky.")
+            .allowIfSubType("java.util.")
+            .allowIfSubType("java.lang.")
+            .allowIfSubType("java.math.")
+            .allowIfSubType("java.time.")
+            .build();
+
+    private final ObjectMapper objectMapper;
+
+    //读取旧格式数据：旧格式只为非final类型写入类型信息，顶层的Long、LocalDateTime等类型读取后会丢失类型
+    private final ObjectMapper legacyObjectMapper;
+
+    public SmileRedisSerializer() {
+        //所有类型都写入类型信息，顶层和Object类型字段中的Long、LocalDateTime等final类型读取时也能还原为原来的类型
+        objectMapper = createObjectMapper(ObjectMapper.DefaultTyping.EVERYTHING);
+        legacyObjectMapper = createObjectMapper(ObjectMapper.DefaultTyping.NON_FINAL);
+    }
+
+    private static ObjectMapper createObjectMapper(ObjectMapper.DefaultTyping typing) {
+        ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+        objectMapper.registerModule(new JavaTimeModule());
+        //类增减字段时兼容旧数据
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        //写入类型信息，读取时还原为原来的类型
+        objectMapper.activateDefaultTyping(TYPE_VALIDATOR, typing, JsonTypeInfo.As.PROPERTY);
+        return objectMapper;
+    }
+
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new SerializationException("smile序列化失败", e);
+        }
+    }
+
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(bytes, Object.class);
+        } catch (Exception e) {
+            //按旧格式读取升级前写入的数据
+            try {
+                return legacyObjectMapper.readValue(bytes, Object.class);
+            } catch (Exception legacyException) {
+                e.addSuppressed(legacyException);
+                throw new SerializationException("smile反序列化失败", e);
+            }
+        }
+    }
+}
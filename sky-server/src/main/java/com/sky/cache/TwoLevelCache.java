@@ -0,0 +1,190 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 二级缓存：一级为进程内的caffeine缓存，二级为redis缓存
+ * 修改数据时通过CacheInvalidationBus通知所有节点清理一级缓存
+ * 不缓存null值：查询结果为null时不放入缓存，下次查询重新加载
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+
+    private final Cache redisCache;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    //本地缓存每次被清理时加一，用于丢弃清理之前从redis或数据库读取的旧数据
+    private final AtomicLong generation = new AtomicLong();
+
+    //正在加载的key，缓存未命中时同一节点上相同的key只加载一次，不同的key并行加载
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    public TwoLevelCache(String name, Cache redisCache, CacheInvalidationBus cacheInvalidationBus,
+                         long maximumSize, long expireMinutes) {
+        super(false);
+        this.name = name;
+        this.redisCache = redisCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .build();
+        cacheInvalidationBus.register(name, this::invalidateLocal);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Object getNativeCache() {
+        return this;
+    }
+
+    protected Object lookup(Object key) {
+        Object value = localCache.getIfPresent(localKey(key));
+        if (value != null) {
+            return value;
+        }
+
+        long current = generation.get();
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        value = toStoreValue(wrapper.get());
+        putLocal(key, value, current);
+        return value;
+    }
+
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            return cast(fromStoreValue(value));
+        }
+
+        long current = generation.get();
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper != null) {
+            value = wrapper.get();
+            putLocal(key, value, current);
+            return cast(value);
+        }
+
+        //其他线程正在加载相同的key时等待其结果
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(localKey, future);
+        if (existing != null) {
+            try {
+                return cast(existing.join());
+            } catch (CompletionException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+        try {
+            value = load(key, valueLoader, current);
+            future.complete(value);
+            return cast(value);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(localKey, future);
+        }
+    }
+
+    public void put(Object key, Object value) {
+        //不缓存null，同时清理旧数据
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        redisCache.put(key, value);
+        //通知所有节点（包括本节点）清理旧的本地缓存，下次读取时从redis加载新数据
+        invalidateLocal(localKey(key));
+        cacheInvalidationBus.publish(name, localKey(key));
+    }
+
+    public void evict(Object key) {
+        redisCache.evict(key);
+        invalidateLocal(localKey(key));
+        cacheInvalidationBus.publish(name, localKey(key));
+    }
+
+    public void clear() {
+        redisCache.clear();
+        invalidateLocal(CacheInvalidationBus.ALL_KEYS);
+        cacheInvalidationBus.publish(name, CacheInvalidationBus.ALL_KEYS);
+    }
+
+    /**
+     * 再次检查redis，仍未命中时调用valueLoader加载数据并放入缓存
+     */
+    private Object load(Object key, Callable<?> valueLoader, long current) {
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper != null) {
+            putLocal(key, wrapper.get(), current);
+            return wrapper.get();
+        }
+        Object result;
+        try {
+            result = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (result != null) {
+            redisCache.put(key, result);
+            putLocal(key, result, current);
+        }
+        return result;
+    }
+
+    /**
+     * Cache接口不携带值的类型，同一个key的值由调用方的valueLoader产生，类型由调用方保证
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+
+    /**
+     * 只有在读取期间本地缓存没有被清理时才放入本地缓存
+     */
+    private void putLocal(Object key, Object storeValue, long expectedGeneration) {
+        if (generation.get() == expectedGeneration) {
+            localCache.put(localKey(key), storeValue);
+        }
+    }
+
+    /**
+     * 清理本节点的本地缓存
+     * @param key 为*时清理全部数据
+     */
+    private void invalidateLocal(String key) {
+        generation.incrementAndGet();
+        if (CacheInvalidationBus.ALL_KEYS.equals(key)) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+
+    //本地缓存统一使用字符串作为key，便于通过失效通知传递
+    private String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,42 @@
+package com.sky.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.AbstractCacheManager;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 二级缓存管理器，为每个缓存名称创建caffeine + redis的二级缓存
+ */
+public class TwoLevelCacheManager extends AbstractCacheManager {
+
+    private final CacheManager redisCacheManager;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final long maximumSize;
+
+    private final long expireMinutes;
+
+    public TwoLevelCacheManager(CacheManager redisCacheManager, CacheInvalidationBus cacheInvalidationBus,
+                                long maximumSize, long expireMinutes) {
+        this.redisCacheManager = redisCacheManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.maximumSize = maximumSize;
+        this.expireMinutes = expireMinutes;
+    }
+
+    protected Collection<? extends Cache> loadCaches() {
+        return Collections.emptyList();
+    }
+
+    protected Cache getMissingCache(String name) {
+        Cache redisCache = redisCacheManager.getCache(name);
+        if (redisCache == null) {
+            return null;
+        }
+        return new TwoLevelCache(name, redisCache, cacheInvalidationBus, maximumSize, expireMinutes);
+    }
+}
@@ -0,0 +1,40 @@
+package com.sky.config;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * 配置类，按配置初始化HttpClientUtil的共享连接池并暴露连接池指标
+ */
+@Configuration
+@Slf4j
+public class HttpClientConfiguration {
+
+    @Autowired
+    private HttpClientProperties httpClientProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        log.info("开始初始化http连接池：{}", httpClientProperties);
+        HttpClientUtil.configure(httpClientProperties);
+        //指标：httpcomponents.httpclient.pool.*{httpclient=sky}，绑定的是连接池视图，重新configure后仍然有效
+        new PoolingHttpClientConnectionManagerMetricsBinder(HttpClientUtil.getConnectionPool(), "sky")
+                .bindTo(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        HttpClientUtil.shutdown();
+    }
+}
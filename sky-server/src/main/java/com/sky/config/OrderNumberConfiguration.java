@@ -0,0 +1,24 @@
+package com.sky.config;
+
+import com.sky.properties.OrderNumberProperties;
+import com.sky.utils.OrderNumberGenerator;
+import com.sky.utils.SnowflakeOrderNumberGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 配置类，用于创建订单号生成器对象
+ */
+@Configuration
+@Slf4j
+public class OrderNumberConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public OrderNumberGenerator orderNumberGenerator(OrderNumberProperties orderNumberProperties) {
+        log.info("开始创建订单号生成器对象：{}", orderNumberProperties);
+        return new SnowflakeOrderNumberGenerator(orderNumberProperties.getWorkerId());
+    }
+}
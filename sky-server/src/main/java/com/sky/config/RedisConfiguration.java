@@ -1,11 +1,24 @@
 package com.sky.config;
 
+import com.sky.cache.CacheInvalidationBus;
+import com.sky.cache.CompactRedisSerializer;
+import com.sky.cache.SmileRedisSerializer;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.properties.RedisCodecProperties;
+import com.sky.websocket.WebSocketBroadcaster;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 
@@ -13,18 +26,84 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 @Slf4j
 public class RedisConfiguration {
 
+    private static final String FORMAT_JDK = "jdk";
+
+    //本地缓存每个缓存名称下最多保存的条目数
+    private static final long LOCAL_CACHE_MAXIMUM_SIZE = 1000;
+
+    //本地缓存的过期时间(分钟)，作为失效通知丢失时的兜底
+    private static final long LOCAL_CACHE_EXPIRE_MINUTES = 10;
+
+    /**
+     * 创建redis value的序列化器
+     * @param redisCodecProperties
+     * @return
+     */
+    @Bean
+    public RedisSerializer<Object> redisValueSerializer(RedisCodecProperties redisCodecProperties) {
+        log.info("创建redis value序列化器：{}", redisCodecProperties);
+        RedisSerializer<Object> codec;
+        if (FORMAT_JDK.equals(redisCodecProperties.getFormat())) {
+            codec = new JdkSerializationRedisSerializer();
+        } else {
+            codec = new SmileRedisSerializer();
+        }
+        return new CompactRedisSerializer(codec, redisCodecProperties.getCompressThreshold());
+    }
+
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                       RedisSerializer<Object> redisValueSerializer) {
         log.info("开始创建redis模板对象...");
-        RedisTemplate redisTemplate = new RedisTemplate();
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
         //设置redis连接工厂对象
         redisTemplate.setConnectionFactory(redisConnectionFactory);
         //设置redis key的序列化器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
 
         //设置redis value的序列化器
-//        redisTemplate.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        redisTemplate.setValueSerializer(redisValueSerializer);
 
         return redisTemplate;
     }
+
+    /**
+     * 创建Spring Cache使用的二级缓存管理器：caffeine本地缓存 + redis缓存
+     * @param redisConnectionFactory
+     * @param redisValueSerializer
+     * @param cacheInvalidationBus
+     * @return
+     */
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, RedisSerializer<Object> redisValueSerializer,
+                                     CacheInvalidationBus cacheInvalidationBus) {
+        log.info("开始创建二级缓存管理器...");
+        //不缓存null值，redis中不会出现序列化器无法处理的NullValue
+        RedisCacheConfiguration cacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
+                .disableCachingNullValues()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer));
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
+                .cacheDefaults(cacheConfiguration)
+                .build();
+        return new TwoLevelCacheManager(redisCacheManager, cacheInvalidationBus,
+                LOCAL_CACHE_MAXIMUM_SIZE, LOCAL_CACHE_EXPIRE_MINUTES);
+    }
+
+    /**
+     * 订阅本地缓存失效通知和集群WebSocket消息
+     * @param redisConnectionFactory
+     * @param cacheInvalidationBus
+     * @param webSocketBroadcaster
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       CacheInvalidationBus cacheInvalidationBus,
+                                                                       WebSocketBroadcaster webSocketBroadcaster) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheInvalidationBus, new ChannelTopic(CacheInvalidationBus.CHANNEL));
+        container.addMessageListener(webSocketBroadcaster, new ChannelTopic(WebSocketBroadcaster.CHANNEL));
+        return container;
+    }
 }
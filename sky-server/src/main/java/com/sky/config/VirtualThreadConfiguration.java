@@ -0,0 +1,55 @@
+package com.sky.config;
+
+import com.sky.utils.VirtualThreadUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * 配置类，开启sky.virtual-threads.enabled后，tomcat请求处理和定时任务都运行在虚拟线程上
+ * 当前JDK不支持虚拟线程时仍使用平台线程
+ * 仍会让虚拟线程占住载体线程(pinning)的synchronized，JDK24起监视器不再导致pinning：
+ * 1. tomcat 9.0.65的SocketProcessorBase.run在处理整个请求期间持有socketWrapper的监视器，请求中的任何阻塞都会占住载体线程，需要升级tomcat才能解除
+ * 2. tomcat NioSocketWrapper读请求体、写响应时的阻塞IO，同样在监视器内
+ * 3. HttpClient 4.5 PoolingHttpClientConnectionManager建立新连接(TCP连接、TLS握手)时持有连接的监视器，复用保活连接时不会发生
+ * 4. HttpClientUtil的configure、shutdown和首次创建连接池，只在启动和关闭时执行
+ * mysql驱动从8.0.33起改用ReentrantLock，Druid连接池、Lettuce、MyBatis执行器在请求路径上没有synchronized
+ * 压测：sky-server/src/jmh/java下的VirtualThreadLoadBenchmark
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "sky.virtual-threads", name = "enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfiguration {
+
+    //定时任务线程数，与未开启虚拟线程时spring boot创建的调度器保持一致
+    @Value("${spring.task.scheduling.pool.size:4}")
+    private int schedulerPoolSize;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (!VirtualThreadUtil.isSupported()) {
+                log.warn("当前JDK不支持虚拟线程，tomcat仍使用平台线程池：{}", System.getProperty("java.version"));
+                return;
+            }
+            log.info("tomcat请求处理使用虚拟线程");
+            protocolHandler.setExecutor(VirtualThreadUtil.newExecutor("tomcat-handler-"));
+        };
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(schedulerPoolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        if (VirtualThreadUtil.isSupported()) {
+            log.info("定时任务使用虚拟线程");
+            scheduler.setThreadFactory(VirtualThreadUtil.newThreadFactory("scheduling-"));
+        }
+        return scheduler;
+    }
+}
@@ -1,6 +1,8 @@
 package com.sky.controller.admin;
 
 
+import com.sky.cache.DishCache;
+import com.sky.cache.CatalogSnapshot;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
@@ -12,9 +14,10 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -28,7 +31,10 @@ public class DishController {
     private DishService dishService;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private DishCache dishCache;
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
 
     /**
      * 新增菜品
@@ -41,8 +47,8 @@ public class DishController {
         log.info("新增菜品：{}", dishDTO);
         dishService.saveWithFlavor(dishDTO);
 
-        //清理缓存数据
-        clearCache("dish_" + dishDTO.getCategoryId());
+        //清理菜品所属分类的缓存数据
+        clearCache(Collections.singleton(dishDTO.getCategoryId()));
 
         return Result.success();
 
@@ -70,10 +76,10 @@ public class DishController {
     @ApiOperation("菜品批量删除")
     public Result delete(@RequestParam List<Long> ids){//注解@RequestParam：mvc框架解析字符串为集合
         log.info("菜品批量删除：{}", ids);
-        dishService.deleteBacth(ids);
+        Set<Long> categoryIds = dishService.deleteBacth(ids);
 
-        //将所有菜品缓存数据清理掉: 所有以dish_开头的key
-        clearCache("dish_*");
+        //清理被删除菜品所属分类的缓存数据
+        clearCache(categoryIds);
 
         return Result.success();
     }
@@ -100,10 +106,10 @@ public class DishController {
     @ApiOperation("修改菜品信息")
     public Result update(@RequestBody DishDTO dishDTO){
         log.info("修改菜品信息：{}", dishDTO);
-        dishService.updateWithFlavor(dishDTO);
+        Set<Long> categoryIds = dishService.updateWithFlavor(dishDTO);
 
-        //将所有菜品缓存数据清理掉: 所有以dish_开头的key
-        clearCache("dish_*");
+        //清理菜品修改前后所属分类的缓存数据
+        clearCache(categoryIds);
 
         return Result.success();
     }
@@ -131,20 +137,22 @@ public class DishController {
     @ApiOperation("设置菜品启用禁用")
     public Result startOrStopDish(@PathVariable Integer status, Long id){
         log.info("设置菜品启用禁用：{}，{}",status,id);
-        dishService.setStartOrStop(status, id);
+        Set<Long> categoryIds = dishService.setStartOrStop(status, id);
 
-        //将所有菜品缓存数据清理掉: 所有以dish_开头的key
-        clearCache("dish_*");
+        //清理菜品所属分类的缓存数据
+        clearCache(categoryIds);
 
         return Result.success();
     }
 
     /**
      * 清理缓存数据
-     * @param pattern
+     * @param categoryIds
      */
-    private void clearCache(String pattern){
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
+    private void clearCache(Collection<Long> categoryIds){
+        dishCache.evict(categoryIds);
+
+        //菜品变更后刷新菜品、套餐快照
+        catalogSnapshot.refresh();
     }
 }
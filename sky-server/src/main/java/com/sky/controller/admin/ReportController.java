@@ -1,5 +1,7 @@
 package com.sky.controller.admin;
 
+import com.sky.constant.MessageConstant;
+import com.sky.exception.ReportBusinessException;
 import com.sky.result.Result;
 import com.sky.service.ReportService;
 import com.sky.vo.*;
@@ -14,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 
 @RestController
 @Api(tags = "数据统计相关接口")
@@ -21,6 +24,9 @@ import java.time.LocalDate;
 @Slf4j
 public class ReportController {
 
+    //导出报表的最大天数，流式写入避免了内存问题，但仍要限制单次导出的查询和文件大小
+    private static final int MAX_EXPORT_DAYS = 366;
+
     @Autowired
     private ReportService reportService;
 
@@ -99,14 +105,33 @@ public class ReportController {
     }
 
     /**
-     * 导出运营数据报表
+     * 导出运营数据报表，不指定时间范围时导出最近30天的数据
+     * @param begin
+     * @param end
      * @param response
      */
     @GetMapping("/export")
     @ApiOperation("导出运营数据报表")
-    public void exportStatistics(HttpServletResponse response){
-        log.info("导出运营数据");
-        reportService.exportBusiness(response);
+    public void exportStatistics(
+            @DateTimeFormat(pattern = "yyyy-MM-dd")
+            LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd")
+            LocalDate end,
+            HttpServletResponse response){
+        if (end == null){
+            end = LocalDate.now().minusDays(1);
+        }
+        if (begin == null){
+            begin = end.minusDays(29);
+        }
+        if (begin.isAfter(end)){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_ERROR);
+        }
+        if (ChronoUnit.DAYS.between(begin, end) >= MAX_EXPORT_DAYS){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_TOO_LONG);
+        }
+        log.info("导出运营数据：{} 到 {}", begin, end);
+        reportService.exportBusiness(begin, end, response);
     }
 
 
@@ -1,5 +1,6 @@
 package com.sky.controller.admin;
 
+import com.sky.cache.CatalogSnapshot;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.result.PageResult;
@@ -25,6 +26,9 @@ public class SetMealController {
     @Autowired
     private SetMealService setMealService;
 
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+
     /**
      * 新增套餐
      * @param setmealDTO
@@ -37,6 +41,7 @@ public class SetMealController {
         log.info("新增套餐：{}",setmealDTO);
 
         setMealService.insert(setmealDTO);
+        catalogSnapshot.refresh();
 
         return Result.success();
     }
@@ -66,6 +71,7 @@ public class SetMealController {
     public Result deleteBatch(@RequestParam List<Long> ids){
         log.info("套餐批量删除");
         setMealService.deleteBtach(ids);
+        catalogSnapshot.refresh();
 
         return Result.success();
     }
@@ -94,6 +100,7 @@ public class SetMealController {
     public Result update(@RequestBody SetmealDTO setmealDTO) {
         log.info("修改套餐:{}", setmealDTO);
         setMealService.update(setmealDTO);
+        catalogSnapshot.refresh();
         return Result.success();
     }
 
@@ -109,6 +116,7 @@ public class SetMealController {
     public Result startOrStop(@PathVariable Integer status, Long id){
         log.info("起售停售套餐设置:{},{}",status,id);
         setMealService.updateStatus(status, id);
+        catalogSnapshot.refresh();
         return Result.success();
     }
 }
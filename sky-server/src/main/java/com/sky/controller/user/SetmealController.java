@@ -32,7 +32,7 @@ public class SetmealController {
      */
     @GetMapping("/list")
     @ApiOperation("根据分类id查询套餐")
-    @Cacheable(cacheNames = "setmealCache", key = "#categoryId")//key: setmealCache::categoryId
+    @Cacheable(cacheNames = "setmealCache", key = "#categoryId", sync = true)//key: setmealCache::categoryId，先查本地缓存再查redis
     public Result<List<Setmeal>> list(Long categoryId) {
         Setmeal setmeal = new Setmeal();
         setmeal.setCategoryId(categoryId);
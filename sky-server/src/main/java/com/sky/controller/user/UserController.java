@@ -3,7 +3,6 @@ package com.sky.controller.user;
 
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.dto.UserLoginDTO;
-import com.sky.entity.User;
 import com.sky.properties.JwtProperties;
 import com.sky.result.Result;
 import com.sky.service.UserService;
@@ -21,6 +20,7 @@ import org.springframework.web.bind.annotation.RestController;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("user/user")
@@ -41,24 +41,24 @@ public class UserController {
      */
     @PostMapping("/login")
     @ApiOperation("微信登录")
-    public Result<UserLoginVO> login(@RequestBody UserLoginDTO userLoginDTO) {
+    public CompletableFuture<Result<UserLoginVO>> login(@RequestBody UserLoginDTO userLoginDTO) {
         log.info("微信用户登录：{}", userLoginDTO.getCode());
 
-        //微信登录
-        User user = userService.wxLogin(userLoginDTO);
+        //微信登录，调用微信接口期间释放请求线程
+        return userService.wxLogin(userLoginDTO).thenApply(user -> {
+            //为微信用户生成jwt令牌
+            Map<String, Object> claims = new HashMap<>();
+            claims.put(JwtClaimsConstant.USER_ID, user.getId());
+            String token = JwtUtil.createJWT(jwtProperties.getUserSecretKey(), jwtProperties.getUserTtl(), claims);
 
-        //为微信用户生成jwt令牌
-        Map<String, Object> claims = new HashMap<>();
-        claims.put(JwtClaimsConstant.USER_ID, user.getId());
-        String token = JwtUtil.createJWT(jwtProperties.getUserSecretKey(), jwtProperties.getUserTtl(), claims);
+            UserLoginVO userLoginVO = UserLoginVO.builder()
+                                        .id(user.getId())
+                                        .openid(user.getOpenid())
+                                        .token(token)
+                                        .build();
 
-        UserLoginVO userLoginVO = UserLoginVO.builder()
-                                    .id(user.getId())
-                                    .openid(user.getOpenid())
-                                    .token(token)
-                                    .build();
-
-        return Result.success(userLoginVO);
+            return Result.success(userLoginVO);
+        });
     }
 
 }
@@ -0,0 +1,88 @@
+package com.sky.interceptor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已校验jwt令牌的缓存，管理端和用户端拦截器共用
+ * 同一令牌再次请求时直接从缓存中获取id，不再重复校验签名和解析json
+ * key为 id的claim名称:令牌的sha-256摘要，缓存在令牌过期时同时过期
+ */
+@Component
+public class JwtTokenCache {
+
+    //最多缓存的令牌数
+    private static final long MAXIMUM_SIZE = 100000;
+
+    private final Cache<String, VerifiedToken> cache = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfter(new Expiry<String, VerifiedToken>() {
+                public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                    long millis = value.expiresAt - System.currentTimeMillis();
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+                }
+
+                public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    /**
+     * 校验令牌并获取令牌中的id
+     * @param secretKey jwt秘钥
+     * @param token
+     * @param idClaim 保存id的claim名称，管理端和用户端不同，缓存互不影响
+     * @return
+     * @throws RuntimeException 令牌无效或已过期
+     */
+    public Long verify(String secretKey, String token, String idClaim) {
+        String key = idClaim + ":" + digest(token);
+        VerifiedToken verified = cache.getIfPresent(key);
+        if (verified != null && verified.expiresAt > System.currentTimeMillis()) {
+            return verified.id;
+        }
+
+        Claims claims = JwtUtil.parseJWT(secretKey, token);
+        Long id = Long.valueOf(claims.get(idClaim).toString());
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            cache.put(key, new VerifiedToken(id, expiration.getTime()));
+        }
+        return id;
+    }
+
+    private String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class VerifiedToken {
+        private final Long id;
+        private final long expiresAt;
+
+        private VerifiedToken(Long id, long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -3,8 +3,6 @@ package com.sky.interceptor;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
-import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -24,6 +22,9 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
     @Autowired
     private JwtProperties jwtProperties;
 
+    @Autowired
+    private JwtTokenCache jwtTokenCache;
+
     /**
      * 校验jwt
      *
@@ -45,10 +46,9 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
 
         //2、校验令牌
         try {
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), token);
-            Long userID = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
-            log.info("当前用户id：", userID);
+            //已校验过的令牌直接从缓存中获取id
+            Long userID = jwtTokenCache.verify(jwtProperties.getUserSecretKey(), token, JwtClaimsConstant.USER_ID);
+            log.debug("当前用户id：{}", userID);
             BaseContext.setCurrentId(userID);
             //3、通过，放行
             return true;
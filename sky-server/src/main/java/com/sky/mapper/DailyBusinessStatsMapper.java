@@ -0,0 +1,49 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyBusinessStats;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 批量插入或更新每日汇总数据
+     * @param statsList
+     */
+    void insertOrUpdateBatch(List<DailyBusinessStats> statsList);
+
+    /**
+     * 查询日期范围内已汇总的数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from daily_business_stats where date >= #{begin} and date <= #{end} order by date")
+    List<DailyBusinessStats> list(LocalDate begin, LocalDate end);
+
+    /**
+     * 根据日期查询汇总数据
+     * @param date
+     * @return
+     */
+    @Select("select * from daily_business_stats where date = #{date}")
+    DailyBusinessStats getByDate(LocalDate date);
+
+    /**
+     * 查询最近一次汇总的日期
+     * @return
+     */
+    @Select("select max(date) from daily_business_stats")
+    LocalDate getLatestDate();
+
+    /**
+     * 查询最早产生营业数据（订单或用户）的日期
+     * @return
+     */
+    @Select("select date(min(t)) from (select min(order_time) t from orders union all select min(create_time) t from user) a")
+    LocalDate getEarliestBusinessDate();
+}
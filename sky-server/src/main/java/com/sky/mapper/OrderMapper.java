@@ -1,12 +1,15 @@
 package com.sky.mapper;
 
 import com.github.pagehelper.Page;
+import com.sky.dto.DailyOrderStatisticsDTO;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrderStatusCountDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -36,6 +39,37 @@ public interface OrderMapper {
      */
     void updateStatus(Orders orders);
 
+    /**
+     * 批量更新订单状态，只更新当前状态为fromStatus的订单
+     * @param ids
+     * @param fromStatus 订单当前的状态
+     * @param orders 需要更新的字段
+     * @return 实际更新的订单数
+     */
+    int updateStatusByIds(List<Long> ids, Integer fromStatus, Orders orders);
+
+    /**
+     * 批量更新下单时间早于orderTime且当前状态为fromStatus的订单，每次最多更新limit条
+     * @param fromStatus 订单当前的状态
+     * @param orderTime
+     * @param orders 需要更新的字段
+     * @param limit
+     * @return 实际更新的订单数
+     */
+    int updateStatusByOrderTimeLT(Integer fromStatus, LocalDateTime orderTime, Orders orders, int limit);
+
+    /**
+     * 修改单个订单的状态，只有当前状态属于fromStatuses时才修改
+     * @param id
+     * @param fromStatuses 允许的当前状态
+     * @param orders 需要更新的字段
+     * @param paidStatus 支付状态为paidStatus的订单改为refundStatus，为null时不修改支付状态
+     * @param refundStatus
+     * @return 实际更新的订单数
+     */
+    int updateStatusByIdAndStatus(Long id, List<Integer> fromStatuses, Orders orders,
+                                  Integer paidStatus, Integer refundStatus);
+
     /**
      * 分页查询历史订单
      * @param ordersPageQueryDTO
@@ -59,6 +93,14 @@ public interface OrderMapper {
     @Select("select count(*) from orders where status = #{status}")
     Integer getCountByStatus(Integer status);
 
+    /**
+     * 按状态分组统计订单数量，没有订单的状态不返回
+     * @param beginTime 下单时间的开始时间，为null时不限制
+     * @param statuses 需要统计的状态，为null时统计全部状态
+     * @return
+     */
+    List<OrderStatusCountDTO> getCountGroupByStatus(LocalDateTime beginTime, List<Integer> statuses);
+
     /**
      * 根据订单状态和下单时间查询订单
      * @param status
@@ -95,4 +137,21 @@ public interface OrderMapper {
      */
     List<GoodsSalesDTO> getTop10ByTime(LocalDateTime beginTime, LocalDateTime endTime, Integer status);
 
+    /**
+     * 按天分组统计订单总数、有效订单数和营业额，没有订单的日期不返回
+     * @param beginTime
+     * @param endTime
+     * @param status 有效订单的状态
+     * @return
+     */
+    List<DailyOrderStatisticsDTO> getDailyStatistics(LocalDateTime beginTime, LocalDateTime endTime, Integer status);
+
+    /**
+     * 查询订单的下单日期（去重），只返回endTime之前下单的订单
+     * @param ids
+     * @param endTime
+     * @return
+     */
+    List<LocalDate> getOrderDatesByIds(List<Long> ids, LocalDateTime endTime);
+
 }
@@ -1,11 +1,13 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyUserStatisticsDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Mapper
 public interface UserMapper {
@@ -25,6 +27,19 @@ public interface UserMapper {
      */
     void insert(User user);
 
+    /**
+     * 根据openid批量查询用户
+     * @param openids
+     * @return
+     */
+    List<User> getByOpenids(List<String> openids);
+
+    /**
+     * 批量新增用户，插入后回填主键
+     * @param users
+     */
+    void insertBatch(List<User> users);
+
     /**
      * 根据用户下单时间查询用户量
      * @param beginTime
@@ -32,4 +47,12 @@ public interface UserMapper {
      * @return
      */
     Integer getUserByTime(LocalDateTime beginTime, LocalDateTime endTime);
+
+    /**
+     * 按天分组统计新增用户数，没有新增用户的日期不返回
+     * @param beginTime
+     * @param endTime
+     * @return
+     */
+    List<DailyUserStatisticsDTO> getDailyNewUsers(LocalDateTime beginTime, LocalDateTime endTime);
 }
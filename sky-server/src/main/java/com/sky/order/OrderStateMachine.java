@@ -0,0 +1,100 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 订单状态机
+ * 合法的状态转换保存在转换表中，每次转换只执行一条带当前状态条件的update：
+ * update orders set ... where id = ? and status in (...)，并发修改同一订单时只有一个能成功
+ * 订单总数不随状态变化，只有完成订单会改变下单日期的营业数据，此时记录订单id以便重新汇总
+ */
+@Component
+@Slf4j
+public class OrderStateMachine {
+
+    //转换表：TRANSITIONS[当前状态]的第n位为1表示可以转换到状态n
+    private static final int[] TRANSITIONS = new int[Orders.CANCELLED + 1];
+
+    static {
+        allow(Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED, Orders.CANCELLED);
+        allow(Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.CANCELLED);
+        allow(Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS, Orders.CANCELLED);
+        allow(Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED, Orders.CANCELLED);
+    }
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    /**
+     * 判断订单能否从一个状态转换到另一个状态
+     * @param from
+     * @param to
+     * @return
+     */
+    public static boolean canTransition(Integer from, Integer to) {
+        return from != null && to != null && from > 0 && from < TRANSITIONS.length
+                && (TRANSITIONS[from] & (1 << to)) != 0;
+    }
+
+    /**
+     * 修改订单状态
+     * @param id
+     * @param target 转换后的状态及需要同时更新的字段
+     * @param fromStatuses 允许的当前状态
+     * @return 订单当前状态不属于fromStatuses或订单不存在时返回false
+     */
+    public boolean transition(Long id, Orders target, Integer... fromStatuses) {
+        return execute(id, target, false, fromStatuses);
+    }
+
+    /**
+     * 取消订单，已支付的订单同时改为退款
+     * @param id
+     * @param target 取消原因、取消时间等需要同时更新的字段
+     * @param fromStatuses 允许的当前状态
+     * @return 订单当前状态不属于fromStatuses或订单不存在时返回false
+     */
+    public boolean cancel(Long id, Orders target, Integer... fromStatuses) {
+        target.setStatus(Orders.CANCELLED);
+        return execute(id, target, true, fromStatuses);
+    }
+
+    private boolean execute(Long id, Orders target, boolean refund, Integer... fromStatuses) {
+        for (Integer from : fromStatuses) {
+            if (!canTransition(from, target.getStatus())) {
+                throw new IllegalArgumentException("非法的订单状态转换：" + from + " -> " + target.getStatus());
+            }
+        }
+        List<Integer> statuses = Arrays.asList(fromStatuses);
+        Integer paidStatus = refund ? Orders.PAID : null;
+        if (orderMapper.updateStatusByIdAndStatus(id, statuses, target, paidStatus, Orders.REFUND) != 1) {
+            return false;
+        }
+        //完成的订单可能属于已汇总的日期，需要重新汇总该日期的营业数据
+        if (Orders.COMPLETED.equals(target.getStatus())) {
+            try {
+                businessStatsService.markChanged(id);
+            } catch (Exception e) {
+                log.error("记录订单营业数据变化失败：{}", id, e);
+            }
+        }
+        return true;
+    }
+
+    private static void allow(Integer from, Integer... targets) {
+        for (Integer to : targets) {
+            TRANSITIONS[from] |= 1 << to;
+        }
+    }
+}
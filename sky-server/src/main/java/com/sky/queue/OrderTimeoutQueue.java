@@ -0,0 +1,70 @@
+package com.sky.queue;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单支付超时延迟队列，基于redis有序集合实现
+ * member为订单id，score为支付截止时间(毫秒时间戳)
+ */
+@Component
+public class OrderTimeoutQueue {
+
+    //订单支付超时时间(分钟)
+    public static final long PAYMENT_TIMEOUT_MINUTES = 15;
+
+    private static final String KEY = "order_timeout";
+
+    //取出并删除已到期的订单id，多个节点同时取出时不会重复，返回逗号分隔的订单id
+    private static final RedisScript<String> POLL_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "if #ids > 0 then redis.call('ZREM', KEYS[1], unpack(ids)) end " +
+            "return table.concat(ids, ',')", String.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 加入队列，到达截止时间后订单超时
+     * @param orderId
+     * @param deadline
+     */
+    public void schedule(Long orderId, LocalDateTime deadline) {
+        long score = deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        stringRedisTemplate.opsForZSet().add(KEY, orderId.toString(), score);
+    }
+
+    /**
+     * 从队列中移除，订单支付后调用
+     * @param orderId
+     */
+    public void cancel(Long orderId) {
+        stringRedisTemplate.opsForZSet().remove(KEY, orderId.toString());
+    }
+
+    /**
+     * 取出一批已经到达截止时间的订单id
+     * @param limit
+     * @return
+     */
+    public List<Long> pollExpired(int limit) {
+        String ids = stringRedisTemplate.execute(POLL_SCRIPT, Collections.singletonList(KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(limit));
+        List<Long> orderIds = new ArrayList<>();
+        if (ids != null && !ids.isEmpty()) {
+            for (String id : ids.split(",")) {
+                orderIds.add(Long.valueOf(id));
+            }
+        }
+        return orderIds;
+    }
+}
@@ -0,0 +1,144 @@
+package com.sky.queue;
+
+import com.sky.constant.MessageConstant;
+import com.sky.entity.User;
+import com.sky.exception.LoginFailedException;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.VirtualThreadProperties;
+import com.sky.utils.VirtualThreadUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 新用户注册队列
+ * 首次登录的openid先放入队列，由单独的线程批量查询并插入，同一openid同时多次注册只插入一次
+ */
+@Component
+@Slf4j
+public class UserRegistrationQueue {
+
+    //每批最多注册的用户数
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private VirtualThreadProperties virtualThreadProperties;
+
+    //openid -> 注册结果
+    private final Map<String, CompletableFuture<User>> waiting = new ConcurrentHashMap<>();
+
+    //待注册的openid
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    //是否已经提交了注册任务
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(
+                VirtualThreadUtil.newThreadFactory("user-registration-", virtualThreadProperties.isEnabled()));
+    }
+
+    /**
+     * 注册新用户，openid已存在时返回已有用户
+     * @param openid
+     * @return
+     */
+    public CompletableFuture<User> register(String openid) {
+        CompletableFuture<User> created = new CompletableFuture<>();
+        CompletableFuture<User> existing = waiting.putIfAbsent(openid, created);
+        if (existing != null) {
+            return existing;
+        }
+        pending.offer(openid);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::dispatch);
+        }
+        return created;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    //取出当前积压的openid，分批注册
+    private void dispatch() {
+        while (true) {
+            List<String> batch = new ArrayList<>();
+            String openid;
+            while (batch.size() < BATCH_SIZE && (openid = pending.poll()) != null) {
+                batch.add(openid);
+            }
+            if (!batch.isEmpty()) {
+                register(batch);
+            }
+            if (!pending.isEmpty()) {
+                continue;
+            }
+
+            scheduled.set(false);
+            //释放标记后可能有新的openid入队，需要再次检查
+            if (pending.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void register(List<String> openids) {
+        Map<String, User> users = new HashMap<>();
+        try {
+            //入队后可能已被其它节点注册
+            for (User user : userMapper.getByOpenids(openids)) {
+                users.put(user.getOpenid(), user);
+            }
+
+            List<User> newUsers = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            for (String openid : openids) {
+                if (!users.containsKey(openid)) {
+                    newUsers.add(User.builder()
+                            .openid(openid)
+                            .createTime(now)
+                            .build());
+                }
+            }
+            if (!newUsers.isEmpty()) {
+                userMapper.insertBatch(newUsers);
+                for (User user : newUsers) {
+                    users.put(user.getOpenid(), user);
+                }
+            }
+        } catch (Exception e) {
+            log.error("批量注册用户失败：{}", openids, e);
+            for (String openid : openids) {
+                waiting.remove(openid).completeExceptionally(new LoginFailedException(MessageConstant.LOGIN_FAILED));
+            }
+            return;
+        }
+
+        for (String openid : openids) {
+            waiting.remove(openid).complete(users.get(openid));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.sky.service;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.vo.BusinessDataVO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BusinessStatsService {
+
+    /**
+     * 查询begin到end每天的营业数据，已结束的日期读取汇总表，今天及尚未汇总的日期实时统计
+     * @param begin
+     * @param end
+     * @return 每天一条数据，没有营业数据的日期各项为0
+     */
+    List<DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end);
+
+    /**
+     * 重新统计begin到end每天的营业数据并写入汇总表
+     * @param begin
+     * @param end
+     */
+    void rollup(LocalDate begin, LocalDate end);
+
+    /**
+     * 记录营业数据发生变化的订单，下单日期已经结束时，该日期会在下次汇总时重新统计
+     * @param orderId
+     */
+    void markChanged(Long orderId);
+
+    /**
+     * 重新统计订单营业数据发生过变化的已结束日期
+     */
+    void rollupChanged();
+
+    /**
+     * 根据每日营业数据计算时间段内的营业数据
+     * @param dailyStats
+     * @return
+     */
+    BusinessDataVO getBusinessData(List<DailyBusinessStats> dailyStats);
+}
@@ -7,6 +7,7 @@ import com.sky.result.PageResult;
 import com.sky.vo.DishVO;
 
 import java.util.List;
+import java.util.Set;
 
 public interface DishService {
 
@@ -26,8 +27,9 @@ public interface DishService {
     /**
      * 菜品批量删除
      * @param ids
+     * @return 被删除菜品所属的分类id
      */
-    void deleteBacth(List<Long> ids);
+    Set<Long> deleteBacth(List<Long> ids);
 
     /**
      * 根据id查询菜品
@@ -39,8 +41,9 @@ public interface DishService {
     /**
      * 修改菜品信息
      * @param dishDTO
+     * @return 菜品修改前后所属的分类id
      */
-    void updateWithFlavor(DishDTO dishDTO);
+    Set<Long> updateWithFlavor(DishDTO dishDTO);
 
 
     /**
@@ -54,8 +57,9 @@ public interface DishService {
      * 设置菜品启用禁用
      * @param status
      * @param id
+     * @return 菜品所属的分类id
      */
-    void setStartOrStop(Integer status, Long id);
+    Set<Long> setStartOrStop(Integer status, Long id);
 
     /**
      * 条件查询菜品和口味
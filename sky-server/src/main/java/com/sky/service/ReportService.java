@@ -44,7 +44,9 @@ public interface ReportService {
 
     /**
      * 导出运营数据报表
+     * @param begin
+     * @param end
      * @param response
      */
-    void exportBusiness(HttpServletResponse response);
+    void exportBusiness(LocalDate begin, LocalDate end, HttpServletResponse response);
 }
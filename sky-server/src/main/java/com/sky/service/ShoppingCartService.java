@@ -19,6 +19,13 @@ public interface ShoppingCartService {
      */
     List<ShoppingCart> showShoppingCart();
 
+    /**
+     * 查询用户购物车
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
     /**
      * 清空购物车
      */
@@ -29,4 +36,10 @@ public interface ShoppingCartService {
      * @param shoppingCartDTO
      */
     void deleteOne(ShoppingCartDTO shoppingCartDTO);
+
+    /**
+     * 将redis中的购物车写回shopping_cart表
+     * @param userId
+     */
+    void writeBack(Long userId);
 }
@@ -4,12 +4,14 @@ package com.sky.service;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface UserService {
 
     /**
-     * 微信登录
+     * 微信登录，不阻塞调用线程
      * @param userLoginDTO
      * @return
      */
-    User wxLogin(UserLoginDTO userLoginDTO);
+    CompletableFuture<User> wxLogin(UserLoginDTO userLoginDTO);
 }
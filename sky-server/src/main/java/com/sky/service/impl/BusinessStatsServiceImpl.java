@@ -0,0 +1,242 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyOrderStatisticsDTO;
+import com.sky.dto.DailyUserStatisticsDTO;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
+import com.sky.vo.BusinessDataVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class BusinessStatsServiceImpl implements BusinessStatsService {
+
+    //营业数据发生过变化的订单id
+    private static final String CHANGED_ORDERS_KEY = "business_stats_changed_orders";
+
+    //需要重新汇总的日期
+    private static final String CHANGED_DATES_KEY = "business_stats_changed_dates";
+
+    //每次最多处理的订单数
+    private static final int CHANGED_ORDERS_BATCH = 1000;
+
+    //每次最多重新汇总的日期数
+    private static final int CHANGED_DATES_BATCH = 100;
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 查询begin到end每天的营业数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<DailyBusinessStats> getDailyStats(LocalDate begin, LocalDate end) {
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, DailyBusinessStats> statsMap = new HashMap<>();
+
+        //已结束的日期读取汇总表
+        if (begin.isBefore(today)) {
+            LocalDate closedEnd = end.isBefore(today) ? end : today.minusDays(1);
+            for (DailyBusinessStats stats : dailyBusinessStatsMapper.list(begin, closedEnd)) {
+                statsMap.put(stats.getDate(), stats);
+            }
+        }
+
+        //从第一个没有汇总数据的日期开始实时统计（今天或者尚未汇总的日期）
+        LocalDate liveBegin = begin;
+        while (!liveBegin.isAfter(end) && statsMap.containsKey(liveBegin)) {
+            liveBegin = liveBegin.plusDays(1);
+        }
+        if (!liveBegin.isAfter(end)) {
+            DailyBusinessStats previous = statsMap.get(liveBegin.minusDays(1));
+            if (previous == null) {
+                previous = dailyBusinessStatsMapper.getByDate(liveBegin.minusDays(1));
+            }
+            Integer totalUsersBefore = previous == null ? null : previous.getTotalUsers();
+            for (DailyBusinessStats stats : computeDailyStats(liveBegin, end, totalUsersBefore)) {
+                statsMap.put(stats.getDate(), stats);
+            }
+        }
+
+        List<DailyBusinessStats> statsList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            statsList.add(statsMap.get(date));
+        }
+        return statsList;
+    }
+
+    /**
+     * 重新统计begin到end每天的营业数据并写入汇总表
+     * @param begin
+     * @param end
+     */
+    public void rollup(LocalDate begin, LocalDate end) {
+        log.info("汇总每日营业数据：{} 到 {}", begin, end);
+        List<DailyBusinessStats> statsList = computeDailyStats(begin, end, null);
+
+        LocalDateTime now = LocalDateTime.now();
+        statsList.forEach(stats -> stats.setUpdateTime(now));
+
+        dailyBusinessStatsMapper.insertOrUpdateBatch(statsList);
+    }
+
+    /**
+     * 记录营业数据发生变化的订单，只写入一次redis，下单日期在汇总时批量查询
+     * @param orderId
+     */
+    public void markChanged(Long orderId) {
+        stringRedisTemplate.opsForSet().add(CHANGED_ORDERS_KEY, orderId.toString());
+    }
+
+    /**
+     * 重新统计订单营业数据发生过变化的已结束日期
+     */
+    public void rollupChanged() {
+        //先把变化订单的下单日期转存为待汇总日期，今天下单的订单实时统计，不需要重新汇总
+        List<String> orderIds = stringRedisTemplate.opsForSet().pop(CHANGED_ORDERS_KEY, CHANGED_ORDERS_BATCH);
+        if (orderIds != null && !orderIds.isEmpty()) {
+            try {
+                List<Long> ids = orderIds.stream().map(Long::valueOf).collect(Collectors.toList());
+                List<LocalDate> orderDates = orderMapper.getOrderDatesByIds(ids, LocalDate.now().atStartOfDay());
+                if (!orderDates.isEmpty()) {
+                    stringRedisTemplate.opsForSet().add(CHANGED_DATES_KEY,
+                            orderDates.stream().map(LocalDate::toString).toArray(String[]::new));
+                }
+            } catch (Exception e) {
+                log.error("查询变化订单的下单日期失败", e);
+                stringRedisTemplate.opsForSet().add(CHANGED_ORDERS_KEY, orderIds.toArray(new String[0]));
+                return;
+            }
+        }
+
+        List<String> dates = stringRedisTemplate.opsForSet().pop(CHANGED_DATES_KEY, CHANGED_DATES_BATCH);
+        if (dates == null) {
+            return;
+        }
+        for (String date : dates) {
+            LocalDate day = LocalDate.parse(date);
+            try {
+                rollup(day, day);
+            } catch (Exception e) {
+                log.error("重新汇总营业数据失败：{}", date, e);
+                stringRedisTemplate.opsForSet().add(CHANGED_DATES_KEY, date);
+            }
+        }
+    }
+
+    /**
+     * 根据每日营业数据计算时间段内的营业数据
+     * @param dailyStats
+     * @return
+     */
+    public BusinessDataVO getBusinessData(List<DailyBusinessStats> dailyStats) {
+        double turnover = 0.0;
+        int totalOrderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        for (DailyBusinessStats stats : dailyStats) {
+            turnover += stats.getTurnover();
+            totalOrderCount += stats.getOrderCount();
+            validOrderCount += stats.getValidOrderCount();
+            newUsers += stats.getNewUsers();
+        }
+
+        Double unitPrice = 0.0;
+
+        Double orderCompletionRate = 0.0;
+        if (totalOrderCount != 0 && validOrderCount != 0) {
+            //订单完成率
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
+            //平均客单价
+            unitPrice = turnover / validOrderCount;
+        }
+
+        return BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(newUsers)
+                .build();
+    }
+
+    /**
+     * 从订单表和用户表按天分组统计begin到end每天的营业数据
+     * @param begin
+     * @param end
+     * @param totalUsersBefore begin之前的用户总数，为null时查询用户表
+     * @return
+     */
+    private List<DailyBusinessStats> computeDailyStats(LocalDate begin, LocalDate end, Integer totalUsersBefore) {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+
+        int days = (int) ChronoUnit.DAYS.between(begin, end) + 1;
+        List<DailyBusinessStats> statsList = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            statsList.add(DailyBusinessStats.builder()
+                    .date(begin.plusDays(i))
+                    .turnover(0.0)
+                    .orderCount(0)
+                    .validOrderCount(0)
+                    .newUsers(0)
+                    .build());
+        }
+
+        //按天分组统计订单总数、有效订单数和营业额
+        List<DailyOrderStatisticsDTO> dailyOrders = orderMapper.getDailyStatistics(beginTime, endTime, Orders.COMPLETED);
+        for (DailyOrderStatisticsDTO dailyOrder : dailyOrders) {
+            DailyBusinessStats stats = statsList.get((int) ChronoUnit.DAYS.between(begin, dailyOrder.getDate()));
+            stats.setOrderCount(dailyOrder.getOrderCount());
+            stats.setValidOrderCount(dailyOrder.getValidOrderCount());
+            stats.setTurnover(dailyOrder.getTurnover() == null ? 0.0 : dailyOrder.getTurnover());
+        }
+
+        //按天分组统计新增用户数
+        List<DailyUserStatisticsDTO> dailyUsers = userMapper.getDailyNewUsers(beginTime, endTime);
+        for (DailyUserStatisticsDTO dailyUser : dailyUsers) {
+            statsList.get((int) ChronoUnit.DAYS.between(begin, dailyUser.getDate())).setNewUsers(dailyUser.getNewUsers());
+        }
+
+        //begin之前的用户总数加上每天的新增用户数，得到截至每天的用户总数
+        Integer totalUsers = totalUsersBefore;
+        if (totalUsers == null) {
+            totalUsers = userMapper.getUserByTime(null, LocalDateTime.of(begin.minusDays(1), LocalTime.MAX));
+            totalUsers = totalUsers == null ? 0 : totalUsers;
+        }
+        for (DailyBusinessStats stats : statsList) {
+            totalUsers += stats.getNewUsers();
+            stats.setTotalUsers(totalUsers);
+        }
+
+        return statsList;
+    }
+}
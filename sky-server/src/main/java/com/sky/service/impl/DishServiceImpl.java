@@ -24,7 +24,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static com.sky.constant.MessageConstant.DISH_BE_RELATED_BY_ONSALE_SETMEAL;
 
@@ -83,7 +88,8 @@ public class DishServiceImpl implements DishService {
      * @param ids
      */
     @Transactional
-    public void deleteBacth(List<Long> ids) {
+    public Set<Long> deleteBacth(List<Long> ids) {
+        Set<Long> categoryIds = new HashSet<>();
         //判断商品是否能够删除---是否存在起售中的商品？？
         for (Long id : ids) {
             Dish dish = dishMapper.getById(id);
@@ -91,6 +97,7 @@ public class DishServiceImpl implements DishService {
                 //当前菜品起售中，不能删除
                 throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
             }
+            categoryIds.add(dish.getCategoryId());
         }
         //判断商品是否能够删除---是否被套餐关联？？
         List<Long> setmealIds = setMealDishMapper.getSetmealIdsByDishIds(ids);
@@ -112,6 +119,7 @@ public class DishServiceImpl implements DishService {
         //sql: delete from dish_flavor where dish_id in (?,?,?)
         dishFlavorMapper.deleteByDishIds(ids);
 
+        return categoryIds;
     }
 
     /**
@@ -135,7 +143,15 @@ public class DishServiceImpl implements DishService {
      * 修改菜品信息
      * @param dishDTO
      */
-    public void updateWithFlavor(DishDTO dishDTO) {
+    public Set<Long> updateWithFlavor(DishDTO dishDTO) {
+        //记录修改前的分类，菜品可能被移动到其他分类
+        Set<Long> categoryIds = new HashSet<>();
+        Dish dishDB = dishMapper.getById(dishDTO.getId());
+        if (dishDB != null){
+            categoryIds.add(dishDB.getCategoryId());
+        }
+        categoryIds.add(dishDTO.getCategoryId());
+
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishDTO, dish);
 
@@ -152,6 +168,8 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        return categoryIds;
     }
 
     /**
@@ -173,7 +191,7 @@ public class DishServiceImpl implements DishService {
      * @param status
      * @param id
      */
-    public void setStartOrStop(Integer status, Long id) {
+    public Set<Long> setStartOrStop(Integer status, Long id) {
         //如果为禁用，查看菜品关联的套餐信息，如果套餐启用则无法修改
         if(status == StatusConstant.DISABLE){
             List<Setmeal> setmeals = setMealMapper.getByDishId(id);
@@ -190,6 +208,9 @@ public class DishServiceImpl implements DishService {
         Dish dish = Dish.builder().id(id).status(status).build();
 
         dishMapper.update(dish);
+
+        Dish dishDB = dishMapper.getById(id);
+        return dishDB == null ? Collections.emptySet() : Collections.singleton(dishDB.getCategoryId());
     }
 
     /**
@@ -201,15 +222,20 @@ public class DishServiceImpl implements DishService {
         List<Dish> dishList = dishMapper.list(dish);
 
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.size() == 0) {
+            return dishVOList;
+        }
+
+        //一次查询所有菜品的口味，按菜品id分组
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
-
-            dishVO.setFlavors(flavors);
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
 
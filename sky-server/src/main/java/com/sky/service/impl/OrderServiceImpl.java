@@ -1,8 +1,9 @@
 package com.sky.service.impl;
 
-import com.alibaba.fastjson.JSON;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CartStore;
+import com.sky.cache.CatalogSnapshot;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
@@ -16,25 +17,33 @@ import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.AddressBookMapper;
 import com.sky.mapper.OrderDetailMapper;
 import com.sky.mapper.OrderMapper;
-import com.sky.mapper.ShoppingCartMapper;
+import com.sky.order.OrderStateMachine;
+import com.sky.queue.OrderTimeoutQueue;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.service.ShoppingCartService;
+import com.sky.utils.OrderNumberGenerator;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
-import com.sky.websocket.WebSocketServer;
+import com.sky.websocket.OrderNotification;
+import com.sky.websocket.WebSocketBroadcaster;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -47,13 +56,34 @@ public class OrderServiceImpl implements OrderService {
     private OrderDetailMapper orderDetailMapper;
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartService shoppingCartService;
+    @Autowired
+    private CartStore cartStore;
 
     @Autowired
     private AddressBookMapper addressBookMapper;
 
     @Autowired
-    private WebSocketServer webSocketServer;
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+
+    @Value("${sky.shop.delivery-fee:6}")
+    private BigDecimal deliveryFee;
+
+    //每份商品的打包费
+    @Value("${sky.shop.pack-fee:1}")
+    private int packFee;
 
 //    @Value("${sky.shop.address}")
 //    private String shopAddress;
@@ -77,50 +107,78 @@ public class OrderServiceImpl implements OrderService {
 
         //查询当前用户购物车数据
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> list = shoppingCartService.list(userId);
         if (list == null || list.size() == 0){
             //抛出购物车无数据异常
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
-        //2.向订单表插入一条数据
+        //2.在服务端按菜品、套餐快照计价，同时构造订单明细，不信任客户端传来的金额
+        List<OrderDetail> orderDetailList = new ArrayList<>(list.size());
+        BigDecimal amount = BigDecimal.ZERO;
+        int packAmount = 0;
+        boolean priceChanged = false;
+        for (ShoppingCart cart : list) {
+            BigDecimal price = getPrice(cart);
+            //加入购物车后商品调价，按新价格更新购物车，由用户确认后重新下单
+            if (cart.getAmount() == null || cart.getAmount().compareTo(price) != 0) {
+                cart.setAmount(price);
+                cartStore.putItem(userId, cart);
+                priceChanged = true;
+            }
+            OrderDetail orderDetail = OrderDetail.builder()
+                    .name(cart.getName())
+                    .image(cart.getImage())
+                    .dishId(cart.getDishId())
+                    .setmealId(cart.getSetmealId())
+                    .dishFlavor(cart.getDishFlavor())
+                    .number(cart.getNumber())
+                    .amount(price)
+                    .build();
+            orderDetailList.add(orderDetail);
+            amount = amount.add(price.multiply(BigDecimal.valueOf(cart.getNumber())));
+            packAmount += packFee * cart.getNumber();
+        }
+        if (priceChanged){
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_PRICE_CHANGED);
+        }
+        //订单金额 = 商品金额 + 打包费 + 配送费，打包费按商品份数在服务端计算
+        amount = amount.add(BigDecimal.valueOf(packAmount)).add(deliveryFee);
+
+        //3.构造订单数据
         Orders orders = new Orders();
-        BeanUtils.copyProperties(ordersSubmitDTO, orders);
+        //金额和打包费以服务端计算结果为准
+        BeanUtils.copyProperties(ordersSubmitDTO, orders, "amount", "packAmount");
+        orders.setAmount(amount);
+        orders.setPackAmount(packAmount);
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        orders.setNumber(orderNumberGenerator.nextNumber());
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
-
         orders.setAddress(addressBook.getDetail());
 
+        //4.在同一事务中写入订单、订单明细
         orderMapper.insert(orders);
 
-
-        List<OrderDetail> orderDetailList = new ArrayList<>();
-        //3.向订单明细表插入n条数据
-
         Long ordersId = orders.getId();
-
-        for (ShoppingCart cart : list) {
-            OrderDetail orderDetail = new OrderDetail();//订单明细
-            BeanUtils.copyProperties(cart, orderDetail);
-            orderDetail.setOrderId(ordersId);//设置当前订单明细关联的订单id
-            orderDetailList.add(orderDetail);
-        }
-
+        orderDetailList.forEach(orderDetail -> orderDetail.setOrderId(ordersId));
         orderDetailMapper.insertBatch(orderDetailList);
 
-        //4.清空当前购物车数据
-
-        shoppingCartMapper.deleteByUserId(userId);
+        //清空购物车、加入超时队列都是redis操作，事务提交后再执行，避免事务回滚后购物车已被清空或超时队列中存在不存在的订单
+        LocalDateTime deadline = orders.getOrderTime().plusMinutes(OrderTimeoutQueue.PAYMENT_TIMEOUT_MINUTES);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cartStore.clear(userId);
+                //加入超时队列，超过支付时间未支付时自动取消
+                orderTimeoutQueue.schedule(ordersId, deadline);
+            }
+        });
 
         //5.封装VO返回结果
-
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
                 .id(ordersId)
                 .orderNumber(orders.getNumber())
@@ -131,6 +189,21 @@ public class OrderServiceImpl implements OrderService {
         return orderSubmitVO;
     }
 
+    /**
+     * 从菜品、套餐快照中获取购物车商品的当前售价，商品已停售时抛出业务异常
+     * @param cart
+     * @return
+     */
+    private BigDecimal getPrice(ShoppingCart cart) {
+        CatalogSnapshot.Item item = cart.getDishId() != null
+                ? catalogSnapshot.getDish(cart.getDishId())
+                : catalogSnapshot.getSetmeal(cart.getSetmealId());
+        if (item == null){
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_NOT_ON_SALE);
+        }
+        return item.getPrice();
+    }
+
     /**
      * 订单支付，无实现
      * @param ordersPaymentDTO
@@ -140,24 +213,26 @@ public class OrderServiceImpl implements OrderService {
         String orderNumber = ordersPaymentDTO.getOrderNumber();
         Orders orders = orderMapper.getOrder(orderNumber, userId);
 
-        orders.setPayMethod(ordersPaymentDTO.getPayMethod());
-        orders.setPayStatus(Orders.PAID);
-        orders.setStatus(Orders.TO_BE_CONFIRMED);
-        orders.setCheckoutTime(LocalDateTime.now());
-
-        orderMapper.updateStatus(orders);
-
-        //通过websocket向客户端浏览器推送消息 type orderId content
-        Map map = new HashMap();
-        map.put("type", 1);//1来单提醒 2客户催单
-        map.put("orderId", orders.getId());
-        map.put("content", "订单号：" + orderNumber);
+        if (orders == null){
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
 
-        String json = JSON.toJSONString(map);
+        //只有待付款的订单才能支付，已超时取消的订单支付失败
+        Orders paid = Orders.builder()
+                .payMethod(ordersPaymentDTO.getPayMethod())
+                .payStatus(Orders.PAID)
+                .status(Orders.TO_BE_CONFIRMED)
+                .checkoutTime(LocalDateTime.now())
+                .build();
+        if (!orderStateMachine.transition(orders.getId(), paid, Orders.PENDING_PAYMENT)){
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
 
-        //推送消息
-        webSocketServer.sendToAllClient(json);
+        //已支付的订单从超时队列中移除
+        orderTimeoutQueue.cancel(orders.getId());
 
+        //通过websocket向客户端浏览器推送来单提醒，经redis推送给所有节点上订阅了来单提醒的客户端
+        webSocketBroadcaster.publish(OrderNotification.newOrder(orders.getId(), orderNumber));
     }
 
     /**
@@ -177,9 +252,10 @@ public class OrderServiceImpl implements OrderService {
         Page<Orders> ordersPage = orderMapper.pageQuery(ordersPageQueryDTO);
         List<OrderVO> list = new ArrayList<>();
         if (ordersPage != null && ordersPage.size() != 0){
+            //一次查询出当前页所有订单的明细，再按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersPage);
             for (Orders order : ordersPage) {
-                Long orderId = order.getId();
-                List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orderId);
+                List<OrderDetail> orderDetailList = orderDetailMap.getOrDefault(order.getId(), new ArrayList<>());
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(order, orderVO);
 
@@ -218,32 +294,14 @@ public class OrderServiceImpl implements OrderService {
      */
     public void cancelOrder(Long id) {
 
-        //查询订单
-        Orders orders = orderMapper.getById(id);
-
-        //订单为空抛异常
-        if (orders == null){
-            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
-        }
-
-        //订单状态不能取消时
-        if (orders.getStatus() > 2){
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        Orders ordersNew = new Orders();
-        ordersNew.setId(orders.getId());
-
-        //订单已支付时
-        if (orders.getPayStatus() == Orders.PAID){
-            ordersNew.setPayStatus(Orders.REFUND);
+        //只有待付款和待接单的订单可以取消，已支付的订单改为退款
+        Orders orders = Orders.builder()
+                .cancelTime(LocalDateTime.now())
+                .cancelReason("用户取消")
+                .build();
+        if (!orderStateMachine.cancel(id, orders, Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED)){
+            throw transitionFailed(id);
         }
-
-        ordersNew.setStatus(Orders.CANCELLED);
-        ordersNew.setCancelTime(LocalDateTime.now());
-        ordersNew.setCancelReason("用户取消");
-
-        orderMapper.updateStatus(ordersNew);
     }
 
     /**
@@ -256,29 +314,24 @@ public class OrderServiceImpl implements OrderService {
         List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(id);
         //将商品信息添加到购物车
 
-        List<ShoppingCart> shoppingCarts = new ArrayList<>();
-
+        Long userId = BaseContext.getCurrentId();
         for (OrderDetail orderDetail : orderDetails) {
 
             ShoppingCart shoppingCart = ShoppingCart.builder()
-                    .image(orderDetail.getImage())
                     .name(orderDetail.getName())
+                    .image(orderDetail.getImage())
                     .dishId(orderDetail.getDishId())
-                    .setmealId(orderDetail.getDishId())
+                    .setmealId(orderDetail.getSetmealId())
                     .dishFlavor(orderDetail.getDishFlavor())
-                    .number(orderDetail.getNumber())
                     .amount(orderDetail.getAmount())
-                    .image(orderDetail.getImage())
+                    .createTime(LocalDateTime.now())
                     .build();
-            shoppingCart.setUserId(BaseContext.getCurrentId());
 
-            shoppingCart.setCreateTime(LocalDateTime.now());
-
-            shoppingCarts.add(shoppingCart);
+            if (!cartStore.increment(userId, shoppingCart, orderDetail.getNumber())) {
+                cartStore.putItem(userId, shoppingCart);
+            }
         }
 
-        shoppingCartMapper.insertBatch(shoppingCarts);
-
     }
 
     /**
@@ -293,10 +346,10 @@ public class OrderServiceImpl implements OrderService {
         List<OrderVO> list = new ArrayList<>();
 
         if (ordersPage != null && ordersPage.size() != 0){
+            //一次查询出当前页所有订单的明细，再按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersPage);
             for (Orders orders : ordersPage) {
-                Long orderId = orders.getId();
-
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
+                List<OrderDetail> orderDetails = orderDetailMap.getOrDefault(orders.getId(), new ArrayList<>());
                 String orderDishes = "";
                 for (OrderDetail orderDetail : orderDetails) {
                     orderDishes += orderDetail.getName() + orderDetail.getDishFlavor()
@@ -313,15 +366,34 @@ public class OrderServiceImpl implements OrderService {
         return new PageResult(ordersPage.getTotal(), list);
     }
 
+    /**
+     * 批量查询订单明细并按订单id分组
+     * @param ordersList
+     * @return
+     */
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+
+        //select * from order_detail where order_id in (?,?,?)
+        List<OrderDetail> orderDetails = orderDetailMapper.getByOrderIds(orderIds);
+
+        return orderDetails.stream().collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
+
     /**
      * 各个状态的订单数量统计
      * @return
      */
     public OrderStatisticsVO statusStatistics() {
 
-        Integer toBeConfirmed = orderMapper.getCountByStatus(Orders.TO_BE_CONFIRMED);
-        Integer confirmed = orderMapper.getCountByStatus(Orders.CONFIRMED);
-        Integer deliveryInProgress = orderMapper.getCountByStatus(Orders.DELIVERY_IN_PROGRESS);
+        //一次查询按状态分组统计
+        List<Integer> statuses = Arrays.asList(Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS);
+        Map<Integer, Integer> countMap = orderMapper.getCountGroupByStatus(null, statuses).stream()
+                .collect(Collectors.toMap(OrderStatusCountDTO::getStatus, OrderStatusCountDTO::getCount));
+
+        Integer toBeConfirmed = countMap.getOrDefault(Orders.TO_BE_CONFIRMED, 0);
+        Integer confirmed = countMap.getOrDefault(Orders.CONFIRMED, 0);
+        Integer deliveryInProgress = countMap.getOrDefault(Orders.DELIVERY_IN_PROGRESS, 0);
 
         OrderStatisticsVO orderStatisticsVO = OrderStatisticsVO.builder()
                                                 .confirmed(confirmed)
@@ -337,11 +409,13 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersConfirmDTO
      */
     public void orderConfirm(OrdersConfirmDTO ordersConfirmDTO) {
+        //只有待接单的订单可以接单
         Orders orders = Orders.builder()
-                .id(ordersConfirmDTO.getId())
                 .status(Orders.CONFIRMED)
                 .build();
-        orderMapper.updateStatus(orders);
+        if (!orderStateMachine.transition(ordersConfirmDTO.getId(), orders, Orders.TO_BE_CONFIRMED)){
+            throw transitionFailed(ordersConfirmDTO.getId());
+        }
     }
 
     /**
@@ -350,25 +424,15 @@ public class OrderServiceImpl implements OrderService {
      */
     public void orderRejection(OrdersRejectionDTO ordersRejectionDTO) throws Exception{
 
-        //只有处于“待接单”状态并且存在的订单才能拒单
-        Orders orders1 = orderMapper.getById(ordersRejectionDTO.getId());
-        if (orders1 == null || orders1.getStatus() != Orders.TO_BE_CONFIRMED){
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
+        //只有处于“待接单”状态并且存在的订单才能拒单，已支付的订单改为退款
         Orders orders = Orders.builder()
-                .id(ordersRejectionDTO.getId())
                 .rejectionReason(ordersRejectionDTO.getRejectionReason())
-                .status(Orders.CANCELLED)
                 .cancelTime(LocalDateTime.now())
                 .cancelReason("商家取消")
                 .build();
-
-        if (orders1.getPayStatus() == Orders.PAID){
-            orders.setPayStatus(Orders.REFUND);
+        if (!orderStateMachine.cancel(ordersRejectionDTO.getId(), orders, Orders.TO_BE_CONFIRMED)){
+            throw transitionFailed(ordersRejectionDTO.getId());
         }
-
-        orderMapper.updateStatus(orders);
     }
 
     /**
@@ -378,22 +442,15 @@ public class OrderServiceImpl implements OrderService {
      */
     public void orderCancel(OrdersCancelDTO ordersCancelDTO) throws Exception {
 
-        Orders orders = new Orders();
-
-        //判断订单是否已支付
-        Orders ordersDB = orderMapper.getById(ordersCancelDTO.getId());
-
-        if (ordersDB.getPayMethod() == Orders.PAID){
-            orders.setPayStatus(Orders.REFUND);
+        //未完成的订单都可以取消，已完成和已取消的订单不能再取消，已支付的订单改为退款
+        Orders orders = Orders.builder()
+                .cancelTime(LocalDateTime.now())
+                .cancelReason(ordersCancelDTO.getCancelReason())
+                .build();
+        if (!orderStateMachine.cancel(ordersCancelDTO.getId(), orders, Orders.PENDING_PAYMENT,
+                Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS)){
+            throw transitionFailed(ordersCancelDTO.getId());
         }
-
-        orders.setId(ordersCancelDTO.getId());
-        orders.setCancelTime(LocalDateTime.now());
-        orders.setCancelReason(ordersCancelDTO.getCancelReason());
-        orders.setStatus(Orders.CANCELLED);
-
-        orderMapper.updateStatus(orders);
-
     }
 
     /**
@@ -404,17 +461,12 @@ public class OrderServiceImpl implements OrderService {
     public void orderDelivery(Long id) throws Exception {
 
         //只有处于CONFIRMED才能点击派送订单
-        Orders ordersDB = orderMapper.getById(id);
-
-        if (ordersDB == null || ordersDB.getStatus() != Orders.CONFIRMED){
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        Orders orders = Orders.builder()
+                .status(Orders.DELIVERY_IN_PROGRESS)
+                .build();
+        if (!orderStateMachine.transition(id, orders, Orders.CONFIRMED)){
+            throw transitionFailed(id);
         }
-
-        Orders orders = new Orders();
-        orders.setId(id);
-        orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
-
-        orderMapper.updateStatus(orders);
     }
 
     /**
@@ -425,19 +477,13 @@ public class OrderServiceImpl implements OrderService {
     public void orderComplete(Long id) throws Exception {
 
         //只有在派送中的商品才可以点击完成订单
-        Orders ordersDB = orderMapper.getById(id);
-
-        if (ordersDB == null || ordersDB.getStatus() != Orders.DELIVERY_IN_PROGRESS){
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        Orders orders = Orders.builder()
+                .status(Orders.COMPLETED)
+                .deliveryTime(LocalDateTime.now())
+                .build();
+        if (!orderStateMachine.transition(id, orders, Orders.DELIVERY_IN_PROGRESS)){
+            throw transitionFailed(id);
         }
-
-        Orders orders = new Orders();
-
-        orders.setId(id);
-        orders.setStatus(Orders.COMPLETED);
-        orders.setDeliveryTime(LocalDateTime.now());
-
-        orderMapper.updateStatus(orders);
     }
 
     public void reminderOrder(Long id){
@@ -449,16 +495,20 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
 
-        //通过websocket向客户端浏览器推送消息 type orderId content
-        Map map = new HashMap();
-        map.put("type", 2);//1来单提醒 2客户催单
-        map.put("orderId", id);
-        map.put("content", "订单号：" + orders.getNumber());
+        //通过websocket向客户端浏览器推送客户催单，经redis推送给所有节点上订阅了客户催单的客户端
+        webSocketBroadcaster.publish(OrderNotification.reminder(id, orders.getNumber()));
 
-        String json = JSON.toJSONString(map);
-
-        //推送消息
-        webSocketServer.sendToAllClient(json);
+    }
 
+    /**
+     * 订单状态修改失败时，区分订单不存在和订单状态错误
+     * @param id
+     * @return
+     */
+    private OrderBusinessException transitionFailed(Long id) {
+        if (orderMapper.getById(id) == null){
+            return new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+        return new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
     }
 }
@@ -1,15 +1,21 @@
 package com.sky.service.impl;
 
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderDetailMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.ReportService;
-import com.sky.service.WorkspaceService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
@@ -25,6 +31,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -32,6 +39,14 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReportServiceImpl implements ReportService {
 
+    //运营数据报表模板中明细数据的起始行和列范围
+    private static final int DETAIL_FIRST_ROW = 7;
+    private static final int DETAIL_FIRST_CELL = 1;
+    private static final int DETAIL_LAST_CELL = 6;
+
+    //流式写入时内存中保留的行数
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
     @Autowired
     private OrderMapper orderMapper;
 
@@ -39,7 +54,8 @@ public class ReportServiceImpl implements ReportService {
     private UserMapper userMapper;
 
     @Autowired
-    private WorkspaceService workspaceService;
+    private BusinessStatsService businessStatsService;
+
     /**
      * 统计指定时间区间的营业额统计(已经完成的订单总金额)
      *
@@ -49,25 +65,11 @@ public class ReportServiceImpl implements ReportService {
      */
     public TurnoverReportVO turnover(LocalDate begin, LocalDate end) {
         //用于存放begin到end范围内每天的日期
-        List<LocalDate> dateList = new ArrayList<>();
-        while (begin.isBefore(end)) {
-            dateList.add(begin);
-            begin = begin.plusDays(1);
-        }
-        dateList.add(end);
+        List<LocalDate> dateList = getDateList(begin, end);
 
-        //查询dateList中每个日期的营业额
-        ArrayList<Double> turnoverList = new ArrayList<>();
-        for (LocalDate date : dateList) {
-            //查询date日期对应的营业额：状态为“已完成”的订单金额合计
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            //select sum(amount) from orders where status = ? and order_time < ? and order_time > ?
-            Double turnover = orderMapper.getTurnoverByTime(Orders.COMPLETED, beginTime, endTime);
-            turnover = turnover == null ? 0.0 : turnover;
-            turnoverList.add(turnover);
-        }
+        //查询每天的营业额，已结束的日期读取汇总数据
+        List<DailyBusinessStats> dailyStats = businessStatsService.getDailyStats(begin, end);
+        List<Double> turnoverList = dailyStats.stream().map(DailyBusinessStats::getTurnover).collect(Collectors.toList());
 
         TurnoverReportVO turnoverReportVO = TurnoverReportVO
                 .builder()
@@ -88,34 +90,12 @@ public class ReportServiceImpl implements ReportService {
      */
     public UserReportVO user(LocalDate begin, LocalDate end) {
         //把begin到end的日期放入dateList集合中
-        List<LocalDate> dateList = new ArrayList<>();
-        while (begin.isBefore(end)) {
-            dateList.add(begin);
-            begin = begin.plusDays(1);
-        }
-        dateList.add(end);
+        List<LocalDate> dateList = getDateList(begin, end);
 
-        //查询begin->end每天总的用户数
-        List<Integer> totalUserList = new ArrayList<>();
-        //查询begin->end每天新的用户数
-        List<Integer> newUserList = new ArrayList<>();
-
-        for (LocalDate date : dateList) {
-            //查询date日期内用户数量
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-            //select count(id) from user where create_time < ?
-            Integer totalUser = userMapper.getUserByTime(null, endTime);
-            totalUser = totalUser == null ? 0 : totalUser;
-            totalUserList.add(totalUser);
-
-            //查询在date日期在小程序创建的用户数量
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-
-            //select count(id) from user where create_time < ? and create_time > ?
-            Integer newlUser = userMapper.getUserByTime(beginTime, endTime);
-            newlUser = newlUser == null ? 0 : newlUser;
-            newUserList.add(newlUser);
-        }
+        //查询begin->end每天总的用户数和新的用户数，已结束的日期读取汇总数据
+        List<DailyBusinessStats> dailyStats = businessStatsService.getDailyStats(begin, end);
+        List<Integer> totalUserList = dailyStats.stream().map(DailyBusinessStats::getTotalUsers).collect(Collectors.toList());
+        List<Integer> newUserList = dailyStats.stream().map(DailyBusinessStats::getNewUsers).collect(Collectors.toList());
 
         UserReportVO reportVO = UserReportVO
                 .builder()
@@ -137,33 +117,17 @@ public class ReportServiceImpl implements ReportService {
      */
     public OrderReportVO orders(LocalDate begin, LocalDate end) {
         //把begin到end的日期放入dateList集合中
-        List<LocalDate> dateList = new ArrayList<>();
-        while (begin.isBefore(end)) {
-            dateList.add(begin);
-            begin = begin.plusDays(1);
-        }
-        dateList.add(end);
+        List<LocalDate> dateList = getDateList(begin, end);
+
+        //每日订单数和每日订单有效数分别存入orderCountList和validOrderCountList中，已结束的日期读取汇总数据
+        List<DailyBusinessStats> dailyStats = businessStatsService.getDailyStats(begin, end);
+        List<Integer> orderCountList = dailyStats.stream().map(DailyBusinessStats::getOrderCount).collect(Collectors.toList());
+        List<Integer> validOrderCountList = dailyStats.stream().map(DailyBusinessStats::getValidOrderCount).collect(Collectors.toList());
 
-        //统计每日订单数和每日订单有效数分别存入orderCountList和validOrderCountList中
-        List<Integer> orderCountList = new ArrayList<>();
-        List<Integer> validOrderCountList = new ArrayList<>();
-        for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            //每日订单数
-            Integer orderCount = orderMapper.getOrderCountByTime(beginTime, endTime, null);
-            orderCount = orderCount == null ? 0 : orderCount;
-            orderCountList.add(orderCount);
-            //每日有效订单数
-            Integer validOrderCount = orderMapper.getOrderCountByTime(beginTime, endTime, Orders.COMPLETED);
-            validOrderCount = validOrderCount == null ? 0 : validOrderCount;
-            validOrderCountList.add(validOrderCount);
-        }
         //订单总数、有效订单数、订单完成率
         Integer validOrderCount = validOrderCountList.stream().reduce(Integer::sum).get();
         Integer totalOrderCount = orderCountList.stream().reduce(Integer::sum).get();
-        Double orderCompletionRate = ((double) validOrderCount / totalOrderCount);
+        Double orderCompletionRate = totalOrderCount == 0 ? 0.0 : ((double) validOrderCount / totalOrderCount);
 
         //封装返回对象
         OrderReportVO orderReportVO = OrderReportVO.builder()
@@ -178,6 +142,22 @@ public class ReportServiceImpl implements ReportService {
         return orderReportVO;
     }
 
+    /**
+     * 获取begin到end范围内每天的日期
+     * @param begin
+     * @param end
+     * @return
+     */
+    private List<LocalDate> getDateList(LocalDate begin, LocalDate end) {
+        List<LocalDate> dateList = new ArrayList<>();
+        while (begin.isBefore(end)) {
+            dateList.add(begin);
+            begin = begin.plusDays(1);
+        }
+        dateList.add(end);
+        return dateList;
+    }
+
     /**
      * 查询销量排名top10
      * @param begin
@@ -207,28 +187,23 @@ public class ReportServiceImpl implements ReportService {
 
     /**
      * 导出运营数据报表
+     * @param begin
+     * @param end
      * @param response
      */
-    public void exportBusiness(HttpServletResponse response) {
-        //1.查询数据库，获取营业数据--查询最近30天的运营数据
-        LocalDate dateBegin = LocalDate.now().minusDays(30);
-        LocalDate dateEnd = LocalDate.now().minusDays(1);
-        LocalDateTime beginTime = LocalDateTime.of(dateBegin, LocalTime.MIN);
-        LocalDateTime endTime = LocalDateTime.of(dateEnd, LocalTime.MAX);
-        //查询概览数据
-        BusinessDataVO businessData = workspaceService.getBusinessData(beginTime, endTime);
-
-        //2.通过POI将数据写入到excel文件中
-        InputStream in = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
-
-
-        try {
-            //基于模板文件创建一个新的excel文件
-            XSSFWorkbook excel = new XSSFWorkbook(in);
+    public void exportBusiness(LocalDate begin, LocalDate end, HttpServletResponse response) {
+        //1.查询数据库，获取营业数据--一次查询出begin到end每天的运营数据，概览数据由每天的数据汇总得到
+        List<DailyBusinessStats> dailyStats = businessStatsService.getDailyStats(begin, end);
+        BusinessDataVO businessData = businessStatsService.getBusinessData(dailyStats);
+
+        //2.通过POI将数据写入到excel文件中，异常时也关闭所有资源
+        try (InputStream in = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
+             //基于模板文件创建一个新的excel文件
+             XSSFWorkbook template = new XSSFWorkbook(in)) {
             //获取标签页
-            XSSFSheet sheet = excel.getSheet("Sheet1");
+            XSSFSheet sheet = template.getSheet("Sheet1");
             //填充数据--时间
-            sheet.getRow(1).getCell(1).setCellValue("时间：" + dateBegin + "至" + dateEnd);
+            sheet.getRow(1).getCell(1).setCellValue("时间：" + begin + "至" + end);
             //获取第四行
             XSSFRow row = sheet.getRow(3);
             //填充数据--营业额
@@ -245,37 +220,55 @@ public class ReportServiceImpl implements ReportService {
             //填充数据--平均客单价
             row.getCell(4).setCellValue(businessData.getUnitPrice());
 
-            //填充明细数据
-            for (int i = 0; i < 30; i++) {
-                LocalDate date = dateBegin.plusDays(i);
-                BusinessDataVO data = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
-                row = sheet.getRow(7 + i);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(data.getTurnover());
-                row.getCell(3).setCellValue(data.getValidOrderCount());
-                row.getCell(4).setCellValue(data.getOrderCompletionRate());
-                row.getCell(5).setCellValue(data.getUnitPrice());
-                row.getCell(6).setCellValue(data.getNewUsers());
+            //记录模板中明细行的样式，然后移除模板中的明细行，明细数据改为流式写入，行数不再受模板限制
+            XSSFRow styleRow = sheet.getRow(DETAIL_FIRST_ROW);
+            short rowHeight = styleRow.getHeight();
+            CellStyle[] cellStyles = new CellStyle[DETAIL_LAST_CELL + 1];
+            for (int i = DETAIL_FIRST_CELL; i <= DETAIL_LAST_CELL; i++) {
+                cellStyles[i] = styleRow.getCell(i).getCellStyle();
+            }
+            for (int i = sheet.getLastRowNum(); i >= DETAIL_FIRST_ROW; i--) {
+                XSSFRow templateRow = sheet.getRow(i);
+                if (templateRow != null) {
+                    sheet.removeRow(templateRow);
+                }
             }
 
-
-            //3.通过输出流将excel文件下载到客户端
-            ServletOutputStream out = response.getOutputStream();
-            excel.write(out);
-
-            //4.关闭资源
-            in.close();
-            out.close();
-            excel.close();
-
+            //基于模板创建流式写入的excel文件，内存中只保留最近的若干行
+            SXSSFWorkbook excel = new SXSSFWorkbook(template, ROW_ACCESS_WINDOW_SIZE);
+            try {
+                SXSSFSheet streamingSheet = excel.getSheet("Sheet1");
+
+                //填充明细数据
+                for (int i = 0; i < dailyStats.size(); i++) {
+                    DailyBusinessStats stats = dailyStats.get(i);
+                    BusinessDataVO data = businessStatsService.getBusinessData(Collections.singletonList(stats));
+                    Row detailRow = streamingSheet.createRow(DETAIL_FIRST_ROW + i);
+                    detailRow.setHeight(rowHeight);
+                    Cell[] cells = new Cell[DETAIL_LAST_CELL + 1];
+                    for (int j = DETAIL_FIRST_CELL; j <= DETAIL_LAST_CELL; j++) {
+                        cells[j] = detailRow.createCell(j);
+                        cells[j].setCellStyle(cellStyles[j]);
+                    }
+                    cells[1].setCellValue(stats.getDate().toString());
+                    cells[2].setCellValue(data.getTurnover());
+                    cells[3].setCellValue(data.getValidOrderCount());
+                    cells[4].setCellValue(data.getOrderCompletionRate());
+                    cells[5].setCellValue(data.getUnitPrice());
+                    cells[6].setCellValue(data.getNewUsers());
+                }
+
+                //3.通过输出流将excel文件下载到客户端
+                try (ServletOutputStream out = response.getOutputStream()) {
+                    excel.write(out);
+                }
+            } finally {
+                //4.删除流式写入产生的临时文件，写入失败时也要删除
+                excel.dispose();
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-
-
-
     }
 
 }
-
@@ -1,20 +1,23 @@
 package com.sky.service.impl;
 
+import com.sky.cache.CartStore;
+import com.sky.cache.CatalogSnapshot;
+import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
-import com.sky.entity.Dish;
-import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetMealMapper;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
 @Service
@@ -24,57 +27,29 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     @Autowired
     private ShoppingCartMapper shoppingCartMapper;
     @Autowired
-    private DishMapper dishMapper;
+    private CatalogSnapshot catalogSnapshot;
     @Autowired
-    private SetMealMapper setMealMapper;
+    private CartStore cartStore;
 
     /**
      * 添加购物车
      * @param shoppingCartDTO
      */
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
-        //判断当前加入购物车的商品是否存在
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
         Long userId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(userId);
 
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-
-        if (list != null && list.size() > 0){
-            //存在时只需数量加一
-            ShoppingCart cart = list.get(0);
-            cart.setNumber(cart.getNumber() + 1); // update shopping_cart set number = ? where id =?
-            shoppingCartMapper.updateNumberById(cart);
-        }else {
-
-            //不存在还需要加入购物车数据
-            //判断本次添加到购物车的是菜品还是套餐
-            Long dishId = shoppingCartDTO.getDishId();
-            if (dishId != null){
-                //本次添加到购物车的是菜品，查询菜品
-                Dish dish = dishMapper.getById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-
-            }else {
-                //本次添加到购物车的是套餐，查询套餐
-                Long setmealId = shoppingCartDTO.getSetmealId();
-                Setmeal setmeal = setMealMapper.getById(setmealId);
-
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
+        //从快照中获取商品信息，商品不存在或已停售时不能加入购物车
+        if (!fillItem(shoppingCart)) {
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_ITEM_NOT_ON_SALE);
+        }
 
-            }
-            shoppingCart.setNumber(1);
+        //在redis中原子地将数量加一，商品第一次加入购物车时保存商品信息
+        if (!cartStore.increment(userId, shoppingCart, 1)) {
             shoppingCart.setCreateTime(LocalDateTime.now());
-
-            shoppingCartMapper.insert(shoppingCart);
+            cartStore.putItem(userId, shoppingCart);
         }
-
-
     }
 
     /**
@@ -83,10 +58,48 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     public List<ShoppingCart> showShoppingCart() {
         Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppingCart = ShoppingCart.builder().userId(userId).build();
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> list = list(userId);
+        Iterator<ShoppingCart> iterator = list.iterator();
+        while (iterator.hasNext()) {
+            ShoppingCart cart = iterator.next();
+            CatalogSnapshot.Item item = getItem(cart);
+            if (item == null) {
+                //加入购物车后商品已停售，从购物车中移除，避免下单时失败
+                cartStore.remove(userId, cart);
+                iterator.remove();
+            } else if (cart.getAmount() == null || cart.getAmount().compareTo(item.getPrice()) != 0) {
+                //加入购物车后商品调价，按当前价格展示
+                cart.setAmount(item.getPrice());
+                cartStore.putItem(userId, cart);
+            }
+        }
         return list;
+    }
 
+    /**
+     * 查询用户购物车
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> list(Long userId) {
+        List<ShoppingCart> list = cartStore.list(userId);
+        Iterator<ShoppingCart> iterator = list.iterator();
+        while (iterator.hasNext()) {
+            ShoppingCart cart = iterator.next();
+            if (cart.getName() != null) {
+                continue;
+            }
+            //商品信息尚未写入时从快照中补充，商品已停售时不再展示
+            if (fillItem(cart)) {
+                cart.setCreateTime(LocalDateTime.now());
+                cartStore.putItem(userId, cart);
+            } else {
+                iterator.remove();
+            }
+        }
+        //按加入购物车的时间排序
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime));
+        return list;
     }
 
     /**
@@ -94,7 +107,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     public void cleanShoppingCart() {
         Long userId = BaseContext.getCurrentId();
-        shoppingCartMapper.deleteByUserId(userId);
+        cartStore.clear(userId);
     }
 
     /**
@@ -102,28 +115,51 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      * @param shoppingCartDTO
      */
     public void deleteOne(ShoppingCartDTO shoppingCartDTO) {
-
         ShoppingCart shoppingCart = new ShoppingCart();
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
 
-        //获取要删除菜品在购物车中的数量信息
-        shoppingCart.setUserId(BaseContext.getCurrentId());
-
-        List<ShoppingCart> shoppingCarts = shoppingCartMapper.list(shoppingCart);
-        if (shoppingCarts != null && shoppingCarts.size() > 0){
-            ShoppingCart cart = shoppingCarts.get(0);
-            Integer number = cart.getNumber();
+        //在redis中原子地将数量减一，数量为0时删除该商品
+        cartStore.decrement(BaseContext.getCurrentId(), shoppingCart);
+    }
 
-            if (number > 1){
-                //数量大于1时，只需将数量减一
-                cart.setNumber(number - 1);
-                shoppingCartMapper.updateNumberById(cart);
+    /**
+     * 将redis中的购物车写回shopping_cart表
+     * @param userId
+     */
+    @Transactional
+    public void writeBack(Long userId) {
+        List<ShoppingCart> list = list(userId);
+        shoppingCartMapper.deleteByUserId(userId);
+        if (list.size() > 0) {
+            shoppingCartMapper.insertBatch(list);
+        }
+    }
 
-            }else {
-                //数量为1时，删除该商品
-                shoppingCartMapper.deleteById(cart);
-            }
+    /**
+     * 从菜品、套餐快照中获取商品的名称、图片和金额
+     * @param shoppingCart
+     * @return 商品不存在或已停售时返回false
+     */
+    private boolean fillItem(ShoppingCart shoppingCart) {
+        CatalogSnapshot.Item item = getItem(shoppingCart);
+        if (item == null) {
+            return false;
         }
+        shoppingCart.setName(item.getName());
+        shoppingCart.setImage(item.getImage());
+        shoppingCart.setAmount(item.getPrice());
+        return true;
+    }
 
+    /**
+     * 从菜品、套餐快照中获取购物车商品
+     * @param shoppingCart
+     * @return 商品不存在或已停售时返回null
+     */
+    private CatalogSnapshot.Item getItem(ShoppingCart shoppingCart) {
+        //判断添加到购物车的是菜品还是套餐
+        return shoppingCart.getDishId() != null
+                ? catalogSnapshot.getDish(shoppingCart.getDishId())
+                : catalogSnapshot.getSetmeal(shoppingCart.getSetmealId());
     }
 }
@@ -2,21 +2,35 @@ package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.sky.constant.MessageConstant;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
+import com.sky.properties.VirtualThreadProperties;
 import com.sky.properties.WeChatProperties;
+import com.sky.queue.UserRegistrationQueue;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
+import com.sky.utils.VirtualThreadUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -25,41 +39,109 @@ public class UserServiceImpl implements UserService {
     //微信服务接口地址
     public static final String WX_LOGIN = "https://api.weixin.qq.com/sns/jscode2session";
 
+    //调用微信接口的线程数，不超过http连接池每个路由的连接数
+    private static final int LOGIN_THREADS = 32;
+
     @Autowired
     private WeChatProperties weChatProperties;
 
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private UserRegistrationQueue userRegistrationQueue;
+
+    @Autowired
+    private VirtualThreadProperties virtualThreadProperties;
+
+    //正在登录的code -> 登录结果，客户端重复提交同一个code时共用一次微信接口调用
+    private final Map<String, CompletableFuture<User>> loginsInFlight = new ConcurrentHashMap<>();
+
+    //openid -> 用户，老用户登录不再查询数据库
+    private final Cache<String, User> userCache = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    //调用微信接口和查询用户的线程池，队列满时拒绝登录，不占用请求线程
+    //开启虚拟线程时线程数不变，仍然限制同时调用微信接口的数量
+    private ThreadPoolExecutor loginExecutor;
+
+    @PostConstruct
+    public void init() {
+        loginExecutor = new ThreadPoolExecutor(
+                LOGIN_THREADS, LOGIN_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                VirtualThreadUtil.newThreadFactory("wx-login-", virtualThreadProperties.isEnabled()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
     /**
      * 微信登录
      * @param userLoginDTO
      * @return
      */
-    public User wxLogin(UserLoginDTO userLoginDTO) {
-        //调用微信接口服务，获取微信用户的openid
-        String openid = getOpenid(userLoginDTO.getCode());
+    public CompletableFuture<User> wxLogin(UserLoginDTO userLoginDTO) {
+        String code = userLoginDTO.getCode();
+        //先放入未完成的结果，只有放入成功的请求调用微信接口，其它请求等待同一个结果
+        CompletableFuture<User> future = new CompletableFuture<>();
+        CompletableFuture<User> existing = loginsInFlight.putIfAbsent(code, future);
+        if (existing != null) {
+            return existing;
+        }
+        //成功或失败后都移除，只移除本次放入的结果
+        future.whenComplete((user, ex) -> loginsInFlight.remove(code, future));
+
+        try {
+            //调用微信接口服务，获取微信用户的openid
+            CompletableFuture.supplyAsync(() -> getOpenid(code), loginExecutor)
+                    .thenCompose(this::getOrRegister)
+                    .whenComplete((user, ex) -> {
+                        if (ex == null) {
+                            future.complete(user);
+                        } else {
+                            future.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null
+                                    ? ex.getCause() : ex);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            log.warn("登录线程池已满，拒绝登录");
+            future.completeExceptionally(new LoginFailedException(MessageConstant.LOGIN_BUSY));
+        }
+        return future;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        loginExecutor.shutdown();
+    }
 
+    /**
+     * 根据openid获取用户，新用户自动注册
+     * @param openid
+     * @return
+     */
+    private CompletableFuture<User> getOrRegister(String openid) {
         //判断openid是否为空，如果为空表示登录失败抛出业务异常
         if (openid == null){
             throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
         }
 
         //判断当前用户是否为新用户
-        User user = userMapper.getByOpenid(openid);
-
-        //如果是新用户则自动注册
-
-        if (user == null){
-            user = User.builder()
-                    .openid(openid)
-                    .createTime(LocalDateTime.now())
-                    .build();
-            userMapper.insert(user);
+        User user = userCache.getIfPresent(openid);
+        if (user == null) {
+            user = userMapper.getByOpenid(openid);
+        }
+        if (user != null) {
+            userCache.put(openid, user);
+            return CompletableFuture.completedFuture(user);
         }
-        //返回这个用户对象
 
-        return user;
+        //如果是新用户则自动注册
+        return userRegistrationQueue.register(openid).thenApply(registered -> {
+            userCache.put(openid, registered);
+            return registered;
+        });
     }
 
     /**
@@ -74,9 +156,14 @@ public class UserServiceImpl implements UserService {
         requestParam.put("js_code", code);
         requestParam.put("grant_type", "authorization_code");
 
-        String json = HttpClientUtil.doGet(WX_LOGIN, requestParam);
+        String url = weChatProperties.getLoginUrl() == null ? WX_LOGIN : weChatProperties.getLoginUrl();
+        String json = HttpClientUtil.doGet(url, requestParam);
 
         JSONObject jsonObject = JSON.parseObject(json);
+        //微信接口调用失败时没有响应内容
+        if (jsonObject == null) {
+            return null;
+        }
         String openid = jsonObject.getString("openid");
         return openid;
     }
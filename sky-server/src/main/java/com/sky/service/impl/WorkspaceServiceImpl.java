@@ -1,12 +1,14 @@
 package com.sky.service.impl;
 
 import com.sky.constant.StatusConstant;
+import com.sky.dto.OrderStatusCountDTO;
 import com.sky.entity.Orders;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetMealMapper;
 
 import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -18,8 +20,8 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -33,6 +35,8 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     private DishMapper dishMapper;
     @Autowired
     private SetMealMapper setmealMapper;
+    @Autowired
+    private BusinessStatsService businessStatsService;
 
     /**
      * 根据时间段统计营业数据
@@ -50,6 +54,11 @@ public class WorkspaceServiceImpl implements WorkspaceService {
          * 新增用户：当日新增用户的数量
          */
 
+        //按整天查询时直接使用每日营业数据汇总（已结束的日期不再扫描订单表和用户表）
+        if (begin.toLocalTime().equals(LocalTime.MIN) && end.toLocalTime().equals(LocalTime.MAX)) {
+            return businessStatsService.getBusinessData(businessStatsService.getDailyStats(begin.toLocalDate(), end.toLocalDate()));
+        }
+
         //查询总订单数
         Integer totalOrderCount = orderMapper.getOrderCountByTime(begin, end, null);
 
@@ -89,23 +98,26 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public OrderOverViewVO getOrderOverView() {
-        Map map = new HashMap();
         LocalDateTime begin = LocalDateTime.now().with(LocalTime.MIN);
 
+        //一次查询按状态分组统计今天的订单
+        Map<Integer, Integer> countMap = orderMapper.getCountGroupByStatus(begin, null).stream()
+                .collect(Collectors.toMap(OrderStatusCountDTO::getStatus, OrderStatusCountDTO::getCount));
+
         //待接单
-        Integer waitingOrders = orderMapper.getOrderCountByTime(begin, null, Orders.TO_BE_CONFIRMED);
+        Integer waitingOrders = countMap.getOrDefault(Orders.TO_BE_CONFIRMED, 0);
 
         //待派送
-        Integer deliveredOrders = orderMapper.getOrderCountByTime(begin, null, Orders.CONFIRMED);
+        Integer deliveredOrders = countMap.getOrDefault(Orders.CONFIRMED, 0);
 
         //已完成
-        Integer completedOrders = orderMapper.getOrderCountByTime(begin,null,Orders.COMPLETED);
+        Integer completedOrders = countMap.getOrDefault(Orders.COMPLETED, 0);
 
         //已取消
-        Integer cancelledOrders = orderMapper.getOrderCountByTime(begin,null,Orders.CANCELLED);
+        Integer cancelledOrders = countMap.getOrDefault(Orders.CANCELLED, 0);
 
         //全部订单
-        Integer allOrders = orderMapper.getOrderCountByTime(begin, null, null);
+        Integer allOrders = countMap.values().stream().mapToInt(Integer::intValue).sum();
 
         return OrderOverViewVO.builder()
                 .waitingOrders(waitingOrders)
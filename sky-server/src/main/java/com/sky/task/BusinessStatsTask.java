@@ -0,0 +1,73 @@
+package com.sky.task;
+
+
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 定时任务类，定时汇总每日营业数据
+ */
+@Component
+@Slf4j
+public class BusinessStatsTask {
+
+    /**
+     * 每次汇总时重新统计的最近天数，用于吸收日期结束后才发生的订单状态变化（如凌晨自动完成的派送中订单）
+     * 定时任务每晚完成所有派送中的订单，被批量完成的订单下单日期最多是前一天，在该范围内
+     * 通过OrderStateMachine完成的更早订单由rollupChangedDays重新汇总
+     */
+    private static final int REFRESH_DAYS = 3;
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    /**
+     * 汇总已结束日期的营业数据：补齐上次汇总之后的日期，并重新统计最近几天
+     */
+    @Scheduled(cron = "0 30 2 * * ?")//每天两点半触发，在处理派送中订单之后
+//    @Scheduled(cron = "0/5 * * * * ?")//测试 5s一次
+    public void rollupDailyStats(){
+        log.info("定时汇总每日营业数据: {}", LocalDate.now());
+
+        LocalDate end = LocalDate.now().minusDays(1);
+
+        LocalDate begin;
+        LocalDate latestDate = dailyBusinessStatsMapper.getLatestDate();
+        if (latestDate == null){
+            //首次汇总，从最早产生营业数据的日期开始
+            begin = dailyBusinessStatsMapper.getEarliestBusinessDate();
+            if (begin == null){
+                return;
+            }
+        }else {
+            begin = latestDate.plusDays(1);
+            LocalDate refreshBegin = end.minusDays(REFRESH_DAYS - 1);
+            if (refreshBegin.isBefore(begin)){
+                begin = refreshBegin;
+            }
+        }
+
+        if (begin.isAfter(end)){
+            return;
+        }
+        businessStatsService.rollup(begin, end);
+    }
+
+    /**
+     * 重新汇总订单状态发生过变化的已结束日期，超出最近几天的订单状态变化也能反映到汇总表中
+     */
+    @Scheduled(cron = "0 0/10 * * * ?")//每10分钟触发一次
+    public void rollupChangedDays(){
+        businessStatsService.rollupChanged();
+    }
+
+}
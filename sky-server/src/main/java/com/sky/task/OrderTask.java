@@ -3,6 +3,8 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.queue.OrderTimeoutQueue;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -13,37 +15,59 @@ import java.util.List;
 
 /**
  * 定时任务类，定时处理订单状态
+ * 订单状态统一通过带当前状态条件的批量update修改，每条语句最多处理CHUNK_SIZE个订单
  */
 @Component
 @Slf4j
 public class OrderTask {
 
+    //每条update语句最多处理的订单数
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String TIMEOUT_CANCEL_REASON = "订单超时，自动取消";
+
+    //订单状态批量修改的指标名称，tag task区分定时任务
+    private static final String TRANSITION_METRIC = "sky.order.transition";
+
     @Autowired
     private OrderMapper orderMapper;
 
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 处理超时队列中到期的订单
+     */
+    @Scheduled(fixedDelay = 1000)//每秒检查一次
+    public void processTimeoutQueue(){
+        List<Long> ids = orderTimeoutQueue.pollExpired(CHUNK_SIZE);
+        while (ids.size() > 0) {
+            int count = orderMapper.updateStatusByIds(ids, Orders.PENDING_PAYMENT, buildTimeoutCancel());
+            record("timeoutQueue", count);
+            log.info("处理超时订单，到期订单数：{}，取消订单数：{}", ids.size(), count);
+            if (ids.size() < CHUNK_SIZE) {
+                break;
+            }
+            ids = orderTimeoutQueue.pollExpired(CHUNK_SIZE);
+        }
+    }
+
     /**
-     * 处理超时订单的方法
+     * 兜底处理超时订单，处理未进入超时队列或取出后处理失败的订单
      */
-    @Scheduled(cron = "0 * * * * ?")//每分钟触发一次
+    @Scheduled(cron = "0 0/10 * * * ?")//每10分钟触发一次
 //    @Scheduled(cron = "2/5 * * * * ?")//测试
     public void processTimeoutOrder(){
         log.info("处理超时订单: {}", LocalDateTime.now());
 
-        LocalDateTime orderTime = LocalDateTime.now().plusMinutes(-15);
+        //update orders set status = 已取消 ... where status = 待付款 and order_time < (当前时间 - 15min) limit ?
+        LocalDateTime orderTime = LocalDateTime.now().plusMinutes(-OrderTimeoutQueue.PAYMENT_TIMEOUT_MINUTES);
+        int count = transitionByOrderTime("timeoutSweep", Orders.PENDING_PAYMENT, orderTime, buildTimeoutCancel());
 
-        //select * from orders where status = ? and order_time < (当前时间 - 15min)
-        List<Long> ids = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, orderTime);
-
-        if (ids != null && ids.size() > 0){
-            for (Long id : ids) {
-                Orders orders = new Orders();
-                orders.setId(id);
-                orders.setStatus(Orders.CANCELLED);
-                orders.setCancelTime(LocalDateTime.now());
-                orders.setCancelReason("订单超时，自动取消");
-                orderMapper.updateStatus(orders);
-            }
-        }
+        log.info("处理超时订单完成，取消订单数：{}", count);
     }
 
     /**
@@ -57,14 +81,47 @@ public class OrderTask {
         //处理前一天的订单
         LocalDateTime orderTime = LocalDateTime.now().plusHours(-2);
 
-        //查询处于派送中并且是昨天下单的订单
-        List<Long> ids = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, orderTime);
-        if (ids != null && ids.size() > 0){
-            for (Long id : ids) {
-                Orders orders = new Orders();
-                orders.setId(id);
-                orders.setStatus(Orders.COMPLETED);
-            }
+        //将处于派送中并且是昨天下单的订单修改为已完成
+        Orders orders = Orders.builder()
+                .status(Orders.COMPLETED)
+                .deliveryTime(LocalDateTime.now())
+                .build();
+        int count = transitionByOrderTime("deliverySweep", Orders.DELIVERY_IN_PROGRESS, orderTime, orders);
+
+        log.info("处理派送中订单完成，完成订单数：{}", count);
+    }
+
+    /**
+     * 分批修改下单时间早于orderTime且当前状态为fromStatus的订单，直到没有需要修改的订单
+     * @param task
+     * @param fromStatus
+     * @param orderTime
+     * @param orders 需要更新的字段
+     * @return 修改的订单总数
+     */
+    private int transitionByOrderTime(String task, Integer fromStatus, LocalDateTime orderTime, Orders orders) {
+        int total = 0;
+        int count;
+        do {
+            count = orderMapper.updateStatusByOrderTimeLT(fromStatus, orderTime, orders, CHUNK_SIZE);
+            total += count;
+            record(task, count);
+        } while (count == CHUNK_SIZE);
+        return total;
+    }
+
+    private Orders buildTimeoutCancel() {
+        return Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelTime(LocalDateTime.now())
+                .cancelReason(TIMEOUT_CANCEL_REASON)
+                .build();
+    }
+
+    //记录修改的订单数
+    private void record(String task, int count) {
+        if (count > 0) {
+            meterRegistry.counter(TRANSITION_METRIC, "task", task).increment(count);
         }
     }
 
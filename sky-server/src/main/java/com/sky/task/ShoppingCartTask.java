@@ -0,0 +1,55 @@
+package com.sky.task;
+
+import com.sky.cache.CartStore;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 定时任务类，将redis中发生变化的购物车写回数据库
+ */
+@Component
+@Slf4j
+public class ShoppingCartTask {
+
+    //每批处理的用户数
+    private static final long BATCH_SIZE = 100;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+
+    /**
+     * 写回购物车
+     */
+    @Scheduled(cron = "0/30 * * * * ?")//每30秒触发一次
+    public void writeBackShoppingCart() {
+        List<Long> failedUserIds = new ArrayList<>();
+        List<Long> userIds = cartStore.popDirtyUserIds(BATCH_SIZE);
+        while (userIds.size() > 0) {
+            log.info("写回购物车，用户数：{}", userIds.size());
+            for (Long userId : userIds) {
+                try {
+                    shoppingCartService.writeBack(userId);
+                } catch (Exception e) {
+                    log.error("写回购物车失败，用户id：{}", userId, e);
+                    failedUserIds.add(userId);
+                }
+            }
+            if (userIds.size() < BATCH_SIZE) {
+                break;
+            }
+            userIds = cartStore.popDirtyUserIds(BATCH_SIZE);
+        }
+
+        //写回失败的购物车下次重试
+        failedUserIds.forEach(cartStore::markDirty);
+    }
+}
@@ -0,0 +1,121 @@
+package com.sky.websocket;
+
+import com.sky.constant.WebSocketTopicConstant;
+
+/**
+ * 推送给管理端的订单消息
+ * 构造时直接拼接出json，不使用反射，同一条消息推送给所有会话时共用同一个字符串
+ * json格式：{"type":1,"orderId":订单id,"content":"订单号：xxx"}，type 1来单提醒 2客户催单
+ */
+public final class OrderNotification {
+
+    //来单提醒
+    public static final int TYPE_ORDER = 1;
+
+    //客户催单
+    public static final int TYPE_REMINDER = 2;
+
+    private static final String CONTENT_PREFIX = "订单号：";
+
+    private final int type;
+
+    private final Long orderId;
+
+    private final String content;
+
+    private final String json;
+
+    private OrderNotification(int type, Long orderId, String orderNumber) {
+        this.type = type;
+        this.orderId = orderId;
+        this.content = CONTENT_PREFIX + orderNumber;
+        this.json = encode();
+    }
+
+    /**
+     * 来单提醒
+     * @param orderId
+     * @param orderNumber
+     * @return
+     */
+    public static OrderNotification newOrder(Long orderId, String orderNumber) {
+        return new OrderNotification(TYPE_ORDER, orderId, orderNumber);
+    }
+
+    /**
+     * 客户催单
+     * @param orderId
+     * @param orderNumber
+     * @return
+     */
+    public static OrderNotification reminder(Long orderId, String orderNumber) {
+        return new OrderNotification(TYPE_REMINDER, orderId, orderNumber);
+    }
+
+    /**
+     * 消息推送的主题
+     * @return
+     */
+    public String getTopic() {
+        return type == TYPE_ORDER ? WebSocketTopicConstant.ORDER : WebSocketTopicConstant.REMINDER;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * 消息的json字符串
+     * @return
+     */
+    public String toJson() {
+        return json;
+    }
+
+    private String encode() {
+        StringBuilder sb = new StringBuilder(48 + content.length());
+        sb.append("{\"type\":").append(type)
+                .append(",\"orderId\":").append(orderId)
+                .append(",\"content\":\"");
+        appendEscaped(sb, content);
+        return sb.append("\"}").toString();
+    }
+
+    //按json规范转义字符串
+    private static void appendEscaped(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+    }
+}
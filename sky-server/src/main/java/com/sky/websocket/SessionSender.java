@@ -0,0 +1,133 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单个WebSocket会话的发送器
+ * 消息先放入有界队列，再通过异步发送逐条发出，同一时刻每个会话最多只有一条消息在发送
+ * 队列已满或发送失败说明客户端过慢或已断开，此时关闭该会话，不影响其它会话和调用方
+ */
+@Slf4j
+class SessionSender {
+
+    private final String sid;
+
+    private final Session session;
+
+    //会话订阅的主题
+    private final String[] topics;
+
+    private final BlockingQueue<String> queue;
+
+    //是否有消息正在发送
+    private final AtomicBoolean sending = new AtomicBoolean(false);
+
+    //是否已关闭，只有第一次关闭会真正关闭会话
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    SessionSender(String sid, Session session, String[] topics, int queueCapacity, long sendTimeoutMillis) {
+        this.sid = sid;
+        this.session = session;
+        this.topics = topics;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        session.getAsyncRemote().setSendTimeout(sendTimeoutMillis);
+    }
+
+    String getSid() {
+        return sid;
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    String[] getTopics() {
+        return topics;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * 将消息放入发送队列，不会阻塞调用方
+     * @param message
+     * @return 会话已关闭、发送队列已满或发送失败时返回false
+     */
+    boolean send(String message) {
+        if (closed.get()) {
+            return false;
+        }
+        if (!queue.offer(message)) {
+            log.warn("WebSocket客户端：{} 发送队列已满，关闭连接", sid);
+            close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "发送队列已满"));
+            return false;
+        }
+        drain();
+        return !closed.get();
+    }
+
+    /**
+     * 关闭会话并丢弃未发送的消息
+     * @param reason 为null时使用默认的关闭原因
+     */
+    void close(CloseReason reason) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        queue.clear();
+        try {
+            if (!session.isOpen()) {
+                return;
+            }
+            if (reason == null) {
+                session.close();
+            } else {
+                session.close(reason);
+            }
+        } catch (IOException e) {
+            log.warn("关闭WebSocket客户端：{} 失败", sid, e);
+        }
+    }
+
+    //没有消息正在发送时取出下一条消息进行发送
+    private void drain() {
+        while (!closed.get() && sending.compareAndSet(false, true)) {
+            String message = queue.poll();
+            if (message != null) {
+                try {
+                    session.getAsyncRemote().sendText(message, this::onSendComplete);
+                } catch (RuntimeException e) {
+                    //会话已被并发关闭时会抛出IllegalStateException
+                    log.warn("WebSocket客户端：{} 发送消息失败，关闭连接", sid, e);
+                    sending.set(false);
+                    close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "发送消息失败"));
+                }
+                return;
+            }
+            sending.set(false);
+            //释放发送标记后可能有新消息入队，需要再次检查
+            if (queue.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void onSendComplete(SendResult result) {
+        if (!result.isOK()) {
+            log.warn("WebSocket客户端：{} 发送消息失败，关闭连接", sid, result.getException());
+            close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "发送消息失败"));
+            return;
+        }
+        sending.set(false);
+        drain();
+    }
+}
@@ -0,0 +1,136 @@
+package com.sky.websocket;
+
+import com.sky.properties.VirtualThreadProperties;
+import com.sky.utils.VirtualThreadUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 集群WebSocket推送
+ * 消息发布到redis频道，每个节点收到后推送给本节点上订阅了该主题的会话，客户端连接到任意节点都能收到消息
+ * 收到的消息先放入队列，由单独的线程批量取出推送，同一批中主题和内容都相同的消息只推送一次
+ * 消息格式：主题|内容
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcaster implements MessageListener {
+
+    public static final String CHANNEL = "sky_websocket_broadcast";
+
+    private static final String SEPARATOR = "|";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @Autowired
+    private VirtualThreadProperties virtualThreadProperties;
+
+    //待推送的消息，格式同redis消息
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+    //是否已经提交了推送任务
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(
+                VirtualThreadUtil.newThreadFactory("websocket-broadcast-", virtualThreadProperties.isEnabled()));
+    }
+
+    /**
+     * 向所有节点上订阅了该消息主题的会话推送订单消息
+     * @param notification
+     */
+    public void publish(OrderNotification notification) {
+        publish(notification.getTopic(), notification.toJson());
+    }
+
+    /**
+     * 向所有节点上订阅了指定主题的会话推送消息
+     * @param topic
+     * @param message
+     */
+    public void publish(String topic, String message) {
+        String body = topic + SEPARATOR + message;
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, body);
+        } catch (Exception e) {
+            //redis不可用时至少推送给本节点的会话
+            log.error("发布WebSocket消息失败，只推送给本节点", e);
+            enqueue(body);
+        }
+    }
+
+    /**
+     * 收到其它节点(包括本节点)发布的消息
+     * @param message
+     * @param pattern
+     */
+    public void onMessage(Message message, byte[] pattern) {
+        enqueue(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private void enqueue(String body) {
+        pending.offer(body);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::dispatch);
+        }
+    }
+
+    //取出当前积压的全部消息，去重后推送
+    private void dispatch() {
+        while (true) {
+            Set<String> batch = new LinkedHashSet<>();
+            String body;
+            while ((body = pending.poll()) != null) {
+                batch.add(body);
+            }
+            for (String item : batch) {
+                deliver(item);
+            }
+
+            scheduled.set(false);
+            //释放标记后可能有新消息入队，需要再次检查
+            if (pending.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void deliver(String body) {
+        int index = body.indexOf(SEPARATOR);
+        if (index < 0) {
+            return;
+        }
+        try {
+            webSocketServer.sendToTopic(body.substring(0, index), body.substring(index + 1));
+        } catch (Exception e) {
+            log.error("推送WebSocket消息失败：{}", body, e);
+        }
+    }
+}
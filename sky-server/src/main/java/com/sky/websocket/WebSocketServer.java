@@ -1,33 +1,69 @@
 package com.sky.websocket;
 
+import com.sky.constant.WebSocketTopicConstant;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * WebSocket服务
+ * 每个会话订阅 sid:自身sid 主题，以及连接参数topics指定的主题(多个主题用逗号分隔)，
+ * 未指定topics时订阅全部订单相关主题，推送消息时只发送给订阅了该主题的会话
  */
 @Component
 @ServerEndpoint("/ws/{sid}")
+@Slf4j
 public class WebSocketServer {
 
-    //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    //每个会话最多缓存的待发送消息数，超过时认为客户端过慢并关闭连接
+    private static final int SEND_QUEUE_CAPACITY = 100;
+
+    //单条消息的发送超时时间(毫秒)
+    private static final long SEND_TIMEOUT_MILLIS = 10000;
+
+    private static final String TOPICS_PARAM = "topics";
+
+    //未指定topics时默认订阅的主题
+    private static final String[] DEFAULT_TOPICS = {WebSocketTopicConstant.ORDER, WebSocketTopicConstant.REMINDER};
+
+    private static final SessionSender[] NO_SUBSCRIBERS = new SessionSender[0];
+
+    //存放会话对象，连接建立、断开和推送消息可能同时发生
+    private static final Map<String, SessionSender> sessionMap = new ConcurrentHashMap<>();
+
+    //主题 -> 订阅该主题的会话，订阅变化时整体替换数组，推送时直接遍历数组
+    private static final Map<String, SessionSender[]> topicMap = new ConcurrentHashMap<>();
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        String[] topics = getTopics(session, sid);
+        log.info("客户端：{} 建立连接，订阅主题：{}", sid, topics);
+
+        SessionSender sender = new SessionSender(sid, session, topics, SEND_QUEUE_CAPACITY, SEND_TIMEOUT_MILLIS);
+        SessionSender old = sessionMap.put(sid, sender);
+        if (old != null) {
+            //同一个sid重复连接时关闭旧连接
+            unsubscribe(old);
+            old.close(null);
+        }
+        for (String topic : topics) {
+            topicMap.merge(topic, new SessionSender[]{sender}, WebSocketServer::append);
+        }
     }
 
     /**
@@ -37,7 +73,7 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端：{} 的信息：{}", sid, message);
     }
 
     /**
@@ -46,26 +82,111 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开：{}", sid);
+        SessionSender sender = sessionMap.get(sid);
+        if (sender != null && sender.getSession() == session) {
+            remove(sender);
+        }
     }
 
     /**
-     * 群发
+     * 连接出错调用的方法
+     *
+     * @param session
+     * @param sid
+     * @param error
+     */
+    @OnError
+    public void onError(Session session, @PathParam("sid") String sid, Throwable error) {
+        log.warn("客户端：{} 连接出错", sid, error);
+        SessionSender sender = sessionMap.get(sid);
+        if (sender != null && sender.getSession() == session) {
+            remove(sender);
+        }
+    }
+
+    /**
+     * 群发，消息放入各个会话的发送队列后立即返回，不等待客户端接收
      *
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        for (SessionSender sender : sessionMap.values()) {
+            send(sender, message);
         }
     }
 
+    /**
+     * 向订阅了指定主题的会话推送消息，主题为 sid:会话id 时只推送给该客户端
+     *
+     * @param topic
+     * @param message
+     */
+    public void sendToTopic(String topic, String message) {
+        SessionSender[] subscribers = topicMap.getOrDefault(topic, NO_SUBSCRIBERS);
+        for (SessionSender sender : subscribers) {
+            send(sender, message);
+        }
+    }
+
+    private void send(SessionSender sender, String message) {
+        boolean sent;
+        try {
+            sent = sender.send(message);
+        } catch (RuntimeException e) {
+            //单个会话发送失败不影响其它订阅者
+            log.warn("WebSocket客户端：{} 发送消息失败", sender.getSid(), e);
+            remove(sender);
+            return;
+        }
+        if (!sent && sender.isClosed()) {
+            //过慢或已断开的会话被关闭后从会话列表中移除
+            remove(sender);
+        }
+    }
+
+    //只移除当前会话，避免误删同一个sid新建立的连接
+    private void remove(SessionSender sender) {
+        sessionMap.remove(sender.getSid(), sender);
+        unsubscribe(sender);
+        sender.close(null);
+    }
+
+    private void unsubscribe(SessionSender sender) {
+        for (String topic : sender.getTopics()) {
+            topicMap.computeIfPresent(topic, (key, subscribers) -> {
+                SessionSender[] result = Arrays.stream(subscribers)
+                        .filter(s -> s != sender)
+                        .toArray(SessionSender[]::new);
+                return result.length == 0 ? null : result;
+            });
+        }
+    }
+
+    private static SessionSender[] append(SessionSender[] subscribers, SessionSender[] added) {
+        SessionSender[] result = Arrays.copyOf(subscribers, subscribers.length + added.length);
+        System.arraycopy(added, 0, result, subscribers.length, added.length);
+        return result;
+    }
+
+    //解析会话订阅的主题：sid:自身sid + topics参数指定的主题，客户端不能订阅其它会话的主题
+    private String[] getTopics(Session session, String sid) {
+        Set<String> topics = new LinkedHashSet<>();
+        topics.add(WebSocketTopicConstant.SESSION_PREFIX + sid);
+        List<String> params = session.getRequestParameterMap().get(TOPICS_PARAM);
+        if (params == null || params.isEmpty()) {
+            topics.addAll(Arrays.asList(DEFAULT_TOPICS));
+        } else {
+            for (String param : params) {
+                for (String topic : param.split(",")) {
+                    topic = topic.trim();
+                    if (!topic.isEmpty() && !topic.startsWith(WebSocketTopicConstant.SESSION_PREFIX)) {
+                        topics.add(topic);
+                    }
+                }
+            }
+        }
+        return topics.toArray(new String[0]);
+    }
 }
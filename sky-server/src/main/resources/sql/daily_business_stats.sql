@@ -0,0 +1,11 @@
+-- 每日营业数据汇总表，由 BusinessStatsTask 定时维护
+CREATE TABLE IF NOT EXISTS `daily_business_stats` (
+  `date` date NOT NULL COMMENT '日期',
+  `turnover` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '营业额',
+  `order_count` int NOT NULL DEFAULT '0' COMMENT '订单总数',
+  `valid_order_count` int NOT NULL DEFAULT '0' COMMENT '有效订单数',
+  `new_users` int NOT NULL DEFAULT '0' COMMENT '新增用户数',
+  `total_users` int NOT NULL DEFAULT '0' COMMENT '用户总数',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='每日营业数据汇总';
@@ -0,0 +1,106 @@
+package com.sky.aspect;
+
+import com.sky.annotation.AutoFill;
+import com.sky.context.BaseContext;
+import com.sky.entity.Category;
+import com.sky.entity.Employee;
+import com.sky.enumeration.OperationType;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AutoFillAspectTest {
+
+    private static final Long CURRENT_ID = 10L;
+
+    private final AutoFillAspect autoFillAspect = new AutoFillAspect();
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(CURRENT_ID);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void fillsAllFieldsOnInsert() throws Exception {
+        Category category = new Category();
+
+        autoFillAspect.autoFill(joinPoint("insert", category));
+
+        assertNotNull(category.getCreateTime());
+        assertEquals(category.getCreateTime(), category.getUpdateTime());
+        assertEquals(CURRENT_ID, category.getCreateUser());
+        assertEquals(CURRENT_ID, category.getUpdateUser());
+    }
+
+    @Test
+    void fillsUpdateFieldsOnUpdate() throws Exception {
+        Employee employee = new Employee();
+
+        autoFillAspect.autoFill(joinPoint("update", employee));
+
+        assertNull(employee.getCreateTime());
+        assertNull(employee.getCreateUser());
+        assertNotNull(employee.getUpdateTime());
+        assertEquals(CURRENT_ID, employee.getUpdateUser());
+    }
+
+    @Test
+    void reusesFillerPerEntityClass() throws Exception {
+        LocalDateTime before = LocalDateTime.now();
+        for (int i = 0; i < 3; i++) {
+            Category category = new Category();
+            autoFillAspect.autoFill(joinPoint("insert", category));
+            assertEquals(CURRENT_ID, category.getCreateUser());
+            assertFalse(category.getCreateTime().isBefore(before));
+        }
+        autoFillAspect.autoFill(joinPoint("update", new Employee()));
+
+        //每个实体类只查找一次setter方法
+        Map<?, ?> fillers = (Map<?, ?>) ReflectionTestUtils.getField(autoFillAspect, "fillers");
+        assertEquals(2, fillers.size());
+    }
+
+    @Test
+    void ignoresMethodWithoutArguments() throws Exception {
+        JoinPoint joinPoint = joinPoint("insert", new Category());
+        when(joinPoint.getArgs()).thenReturn(new Object[0]);
+
+        autoFillAspect.autoFill(joinPoint);
+    }
+
+    private JoinPoint joinPoint(String methodName, Object entity) throws NoSuchMethodException {
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(SampleMapper.class.getMethod(methodName, Object.class));
+        JoinPoint joinPoint = mock(JoinPoint.class);
+        when(joinPoint.getSignature()).thenReturn(signature);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{entity});
+        return joinPoint;
+    }
+
+    interface SampleMapper {
+
+        @AutoFill(OperationType.INSERT)
+        void insert(Object entity);
+
+        @AutoFill(OperationType.UPDATE)
+        void update(Object entity);
+    }
+}
@@ -0,0 +1,137 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CartStoreTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String KEY = "shopping_cart_1";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ShoppingCartMapper shoppingCartMapper;
+
+    @InjectMocks
+    private CartStore cartStore;
+
+    @Test
+    void cartOnlyInDatabaseIsLoadedIntoRedis() {
+        ShoppingCart row = ShoppingCart.builder()
+                .id(10L)
+                .userId(USER_ID)
+                .setmealId(5L)
+                .name("套餐")
+                .number(2)
+                .amount(new BigDecimal("30.00"))
+                .createTime(LocalDateTime.of(2024, 5, 1, 12, 0))
+                .build();
+        when(stringRedisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+        when(hashOperations.entries(KEY)).thenReturn(Collections.emptyMap());
+        when(shoppingCartMapper.list(any(ShoppingCart.class))).thenReturn(Collections.singletonList(row));
+        //过期时间、loaded字段、数量字段和值、商品信息字段和值
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(1L);
+
+        List<ShoppingCart> list = cartStore.list(USER_ID);
+
+        assertEquals(1, list.size());
+        assertEquals(5L, list.get(0).getSetmealId());
+        assertEquals(2, list.get(0).getNumber());
+        assertEquals(new BigDecimal("30.00"), list.get(0).getAmount());
+
+        ArgumentCaptor<ShoppingCart> query = ArgumentCaptor.forClass(ShoppingCart.class);
+        verify(shoppingCartMapper).list(query.capture());
+        assertEquals(USER_ID, query.getValue().getUserId());
+
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(stringRedisTemplate).execute(any(RedisScript.class), anyList(), args.capture(), args.capture(),
+                args.capture(), args.capture(), args.capture(), args.capture());
+        List<Object> values = args.getAllValues();
+        assertEquals("loaded", values.get(1));
+        assertEquals("n:s5", values.get(2));
+        assertEquals("2", values.get(3));
+        assertEquals("i:s5", values.get(4));
+        assertEquals("套餐", JSON.parseObject((String) values.get(5), ShoppingCart.class).getName());
+    }
+
+    @Test
+    void incrementLoadsCartFromDatabaseWhenHashIsMissing() {
+        when(shoppingCartMapper.list(any(ShoppingCart.class))).thenReturn(Collections.emptyList());
+        //第一次执行时hash不存在
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any()))
+                .thenReturn(-1L, 1L);
+        //加载空购物车：过期时间、loaded字段
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(1L);
+
+        assertTrue(cartStore.increment(USER_ID, ShoppingCart.builder().dishId(3L).build(), 1));
+
+        verify(shoppingCartMapper).list(any(ShoppingCart.class));
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void clearedCartIsNotReloadedFromDatabase() {
+        //清空后hash中只剩loaded字段
+        Map<Object, Object> entries = new HashMap<>();
+        entries.put("loaded", "1");
+        when(stringRedisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+        when(hashOperations.entries(KEY)).thenReturn(entries);
+
+        assertTrue(cartStore.list(USER_ID).isEmpty());
+        verifyNoInteractions(shoppingCartMapper);
+    }
+
+    @Test
+    void cartInRedisIsServedWithoutDatabase() {
+        ShoppingCart item = ShoppingCart.builder().dishId(3L).dishFlavor("微辣").name("菜品").amount(new BigDecimal("9.90")).build();
+        Map<Object, Object> entries = new HashMap<>();
+        entries.put("loaded", "1");
+        entries.put("n:d3:微辣", "4");
+        entries.put("i:d3:微辣", JSON.toJSONString(item));
+        when(stringRedisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+        when(hashOperations.entries(KEY)).thenReturn(entries);
+
+        List<ShoppingCart> list = cartStore.list(USER_ID);
+
+        assertEquals(1, list.size());
+        assertEquals("菜品", list.get(0).getName());
+        assertEquals(4, list.get(0).getNumber());
+        assertEquals(Arrays.asList(3L, USER_ID), Arrays.asList(list.get(0).getDishId(), list.get(0).getUserId()));
+        verifyNoInteractions(shoppingCartMapper);
+    }
+}
@@ -0,0 +1,118 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sky.entity.DishFlavor;
+import com.sky.result.Result;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactRedisSerializerTest {
+
+    private final CompactRedisSerializer serializer = new CompactRedisSerializer(new SmileRedisSerializer(), 1024);
+
+    @Test
+    void rootScalarsKeepTheirType() {
+        assertRoundTrip(5L);
+        assertRoundTrip(Long.MAX_VALUE);
+        assertRoundTrip(7);
+        assertRoundTrip(new BigDecimal("12.50"));
+        assertRoundTrip(LocalDateTime.of(2024, 5, 1, 12, 30, 15));
+        assertRoundTrip("套餐");
+        assertRoundTrip(Boolean.TRUE);
+    }
+
+    @Test
+    void collectionElementsKeepTheirType() {
+        assertRoundTrip(new ArrayList<>(Arrays.asList(1L, 2L, 3L)));
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", 1L);
+        map.put("price", new BigDecimal("3.00"));
+        map.put("time", LocalDateTime.of(2024, 5, 1, 0, 0));
+        assertRoundTrip(map);
+    }
+
+    @Test
+    void beansRoundTrip() {
+        List<DishVO> dishes = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            dishes.add(DishVO.builder()
+                    .id(i)
+                    .name("菜品" + i)
+                    .categoryId(10L)
+                    .price(new BigDecimal("18.00"))
+                    .status(1)
+                    .updateTime(LocalDateTime.of(2024, 5, 1, 12, 0))
+                    .flavors(new ArrayList<>(Collections.singletonList(
+                            DishFlavor.builder().id(i).dishId(i).name("辣度").value("[\"不辣\",\"微辣\"]").build())))
+                    .build());
+        }
+        //超过压缩阈值，会被压缩
+        byte[] bytes = serializer.serialize(dishes);
+        assertEquals(1, bytes[0]);
+        assertEquals(dishes, serializer.deserialize(bytes));
+
+        assertRoundTrip(Result.success(dishes.get(0)));
+    }
+
+    @Test
+    void nullAndEmpty() {
+        assertArrayEquals(new byte[0], serializer.serialize(null));
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    void readsJdkSerializedValues() {
+        DishVO dish = DishVO.builder().id(1L).name("菜品").price(new BigDecimal("9.90")).build();
+        byte[] legacy = new JdkSerializationRedisSerializer().serialize(dish);
+        assertEquals(dish, serializer.deserialize(legacy));
+    }
+
+    @Test
+    void readsSmileValuesWrittenWithNonFinalTyping() throws Exception {
+        //升级前的smile格式：只为非final类型写入类型信息
+        ObjectMapper legacyMapper = new ObjectMapper(new SmileFactory());
+        legacyMapper.registerModule(new JavaTimeModule());
+        legacyMapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder().allowIfSubType("com.sky.")
+                        .allowIfSubType("java.").build(),
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+
+        List<DishVO> dishes = new ArrayList<>(Collections.singletonList(DishVO.builder()
+                .id(1L)
+                .name("菜品")
+                .price(new BigDecimal("9.90"))
+                .updateTime(LocalDateTime.of(2024, 5, 1, 12, 0))
+                .build()));
+        byte[] data = legacyMapper.writeValueAsBytes(dishes);
+        byte[] legacy = new byte[data.length + 1];
+        System.arraycopy(data, 0, legacy, 1, data.length);
+
+        assertEquals(dishes, serializer.deserialize(legacy));
+    }
+
+    private void assertRoundTrip(Object value) {
+        Object result = serializer.deserialize(serializer.serialize(value));
+        assertEquals(value, result);
+        assertTrue(value.getClass() == result.getClass(), value.getClass() + " -> " + result.getClass());
+    }
+}
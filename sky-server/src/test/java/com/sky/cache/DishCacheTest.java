@@ -0,0 +1,75 @@
+package com.sky.cache;
+
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DishCacheTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private RedisSerializer<Object> redisValueSerializer;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @InjectMocks
+    private DishCache dishCache;
+
+    @Test
+    void nullCategoryGoesToLoader() {
+        List<DishVO> dishes = Collections.singletonList(DishVO.builder().id(1L).build());
+        AtomicInteger loads = new AtomicInteger();
+
+        //不指定分类时每次都查询数据库，不访问缓存
+        for (int i = 0; i < 2; i++) {
+            assertEquals(dishes, dishCache.get(null, () -> {
+                loads.incrementAndGet();
+                return dishes;
+            }));
+        }
+
+        assertEquals(2, loads.get());
+        verifyNoInteractions(redisTemplate, stringRedisTemplate);
+    }
+
+    @Test
+    void redisHitIsKeptInLocalCache() {
+        DishVO dish = DishVO.builder().id(1L).build();
+        when(redisTemplate.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+                anyList(), anyString())).thenReturn(Collections.singletonList(dish));
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Collections.singletonList(dish), dishCache.get(1L, Collections::emptyList));
+        }
+
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), any(RedisSerializer.class),
+                any(RedisSerializer.class), anyList(), anyString());
+    }
+}
@@ -0,0 +1,172 @@
+package com.sky.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class TwoLevelCacheTest {
+
+    private ConcurrentMapCache redisCache;
+
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        //用不允许null值的内存缓存代替redis缓存
+        redisCache = new ConcurrentMapCache("setmealCache", false);
+        cacheInvalidationBus = mock(CacheInvalidationBus.class);
+        cache = new TwoLevelCache("setmealCache", redisCache, cacheInvalidationBus, 100, 10);
+    }
+
+    @Test
+    void nullResultIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("1", () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get("1", () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+
+        assertEquals(2, loads.get());
+        assertNull(redisCache.get("1"));
+        assertNull(cache.get("1"));
+    }
+
+    @Test
+    void putNullEvictsOldValue() {
+        cache.put("1", "value");
+        cache.put("1", null);
+
+        assertNull(cache.get("1"));
+        assertNull(redisCache.get("1"));
+    }
+
+    @Test
+    void loadedValueIsServedFromCache() {
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("value", cache.get("1", () -> {
+                loads.incrementAndGet();
+                return "value";
+            }));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals("value", redisCache.get("1").get());
+    }
+
+    @Test
+    void putPublishesInvalidation() {
+        cache.get("1", () -> "old");
+
+        cache.put("1", "new");
+
+        //其他节点的本地缓存也要清理
+        verify(cacheInvalidationBus).publish("setmealCache", "1");
+        assertEquals("new", cache.get("1").get());
+    }
+
+    @Test
+    void concurrentMissesOfSameKeyLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.get("1", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                release.await();
+                return "value";
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(() -> cache.get("1", () -> {
+                loads.incrementAndGet();
+                return "other";
+            }));
+            //第二个线程等待第一个线程的加载结果
+            Thread.sleep(100);
+            assertFalse(second.isDone());
+            release.countDown();
+
+            assertEquals("value", first.get(5, TimeUnit.SECONDS));
+            assertEquals("value", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void differentKeysLoadInParallel() throws Exception {
+        CountDownLatch otherLoaded = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            //key 1 的加载要等 key 2 加载完成，串行加载时会一直等待
+            Future<String> first = executor.submit(() -> cache.get("1", () -> {
+                assertTrue(otherLoaded.await(5, TimeUnit.SECONDS));
+                return "1";
+            }));
+            Thread.sleep(100);
+            assertEquals("2", cache.get("2", () -> {
+                otherLoaded.countDown();
+                return "2";
+            }));
+            assertEquals("1", first.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loaderFailureReachesWaiters() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.get("1", () -> {
+                loading.countDown();
+                release.await();
+                throw new IllegalStateException("db down");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(() -> cache.get("1", () -> "value"));
+            Thread.sleep(100);
+            release.countDown();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof Cache.ValueRetrievalException);
+            e = assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof Cache.ValueRetrievalException);
+
+            //失败后不保留加载状态，下次重新加载
+            assertEquals("value", cache.get("1", () -> "value"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.sky.config;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 检查application.yml中与运行方式相关的配置
+ */
+class ApplicationConfigTest {
+
+    private static PropertySource<?> config;
+
+    @BeforeAll
+    static void load() throws IOException {
+        config = new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yml")).get(0);
+    }
+
+    @Test
+    void schedulerHasMoreThanOneThread() {
+        //每秒执行的超时队列任务不能独占唯一的调度线程
+        assertEquals(4, config.getProperty("spring.task.scheduling.pool.size"));
+    }
+
+    @Test
+    void actuatorListensOnLocalhostOnly() {
+        //健康检查和指标端点不通过对外的8080端口暴露
+        assertEquals(8081, config.getProperty("management.server.port"));
+        assertEquals("127.0.0.1", config.getProperty("management.server.address"));
+        assertEquals("health,metrics", config.getProperty("management.endpoints.web.exposure.include"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.sky.config;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HttpClientConfigurationTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final HttpClientConfiguration httpClientConfiguration = new HttpClientConfiguration();
+
+    @AfterEach
+    void tearDown() {
+        httpClientConfiguration.destroy();
+    }
+
+    @Test
+    void metricsFollowReconfiguredPool() {
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxTotal(20);
+        ReflectionTestUtils.setField(httpClientConfiguration, "httpClientProperties", properties);
+        ReflectionTestUtils.setField(httpClientConfiguration, "meterRegistry", meterRegistry);
+        httpClientConfiguration.init();
+        assertEquals(20, maxTotal());
+
+        properties.setMaxTotal(30);
+        HttpClientUtil.configure(properties);
+
+        //重建连接池后指标读取的是新的连接池
+        assertEquals(30, maxTotal());
+    }
+
+    private double maxTotal() {
+        return meterRegistry.get("httpcomponents.httpclient.pool.total.max").tag("httpclient", "sky").gauge().value();
+    }
+}
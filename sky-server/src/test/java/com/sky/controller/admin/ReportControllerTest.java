@@ -0,0 +1,60 @@
+package com.sky.controller.admin;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.ReportBusinessException;
+import com.sky.service.ReportService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ReportControllerTest {
+
+    @Mock
+    private ReportService reportService;
+
+    @InjectMocks
+    private ReportController reportController;
+
+    @Test
+    void exportRejectsBeginAfterEnd() {
+        LocalDate end = LocalDate.of(2026, 1, 1);
+
+        ReportBusinessException e = assertThrows(ReportBusinessException.class,
+                () -> reportController.exportStatistics(end.plusDays(1), end, new MockHttpServletResponse()));
+        assertEquals(MessageConstant.REPORT_DATE_RANGE_ERROR, e.getMessage());
+        verifyNoInteractions(reportService);
+    }
+
+    @Test
+    void exportRejectsTooLongRange() {
+        LocalDate begin = LocalDate.of(2025, 1, 1);
+
+        ReportBusinessException e = assertThrows(ReportBusinessException.class,
+                () -> reportController.exportStatistics(begin, begin.plusDays(366), new MockHttpServletResponse()));
+        assertEquals(MessageConstant.REPORT_DATE_RANGE_TOO_LONG, e.getMessage());
+        verifyNoInteractions(reportService);
+    }
+
+    @Test
+    void exportAllowsFullYear() {
+        LocalDate begin = LocalDate.of(2025, 1, 1);
+        LocalDate end = begin.plusDays(365);
+
+        reportController.exportStatistics(begin, end, new MockHttpServletResponse());
+
+        verify(reportService).exportBusiness(eq(begin), eq(end), any());
+    }
+}
@@ -0,0 +1,68 @@
+package com.sky.interceptor;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtTokenCacheTest {
+
+    private static final String SECRET_KEY = "itcast";
+    private static final String OTHER_SECRET_KEY = "itheima";
+
+    private final JwtTokenCache jwtTokenCache = new JwtTokenCache();
+
+    @Test
+    void returnsCachedIdWithoutParsingAgain() {
+        String token = createToken(JwtClaimsConstant.EMP_ID, 7L, 60000);
+
+        assertEquals(Long.valueOf(7L), jwtTokenCache.verify(SECRET_KEY, token, JwtClaimsConstant.EMP_ID));
+
+        //命中缓存时不再校验签名，使用错误的秘钥也能取到id
+        assertEquals(Long.valueOf(7L), jwtTokenCache.verify(OTHER_SECRET_KEY, token, JwtClaimsConstant.EMP_ID));
+    }
+
+    @Test
+    void rejectsInvalidTokenOnMiss() {
+        String token = createToken(JwtClaimsConstant.EMP_ID, 7L, 60000);
+
+        assertThrows(SignatureException.class,
+                () -> jwtTokenCache.verify(OTHER_SECRET_KEY, token, JwtClaimsConstant.EMP_ID));
+    }
+
+    @Test
+    void rejectsExpiredToken() throws InterruptedException {
+        //jwt的过期时间精确到秒
+        String token = createToken(JwtClaimsConstant.USER_ID, 8L, 2000);
+        assertEquals(Long.valueOf(8L), jwtTokenCache.verify(SECRET_KEY, token, JwtClaimsConstant.USER_ID));
+
+        Thread.sleep(3000);
+
+        //令牌过期后缓存同时失效，重新解析时抛出过期异常
+        assertThrows(ExpiredJwtException.class,
+                () -> jwtTokenCache.verify(SECRET_KEY, token, JwtClaimsConstant.USER_ID));
+    }
+
+    @Test
+    void separatesEntriesByClaim() {
+        String token = createToken(JwtClaimsConstant.EMP_ID, 7L, 60000);
+        jwtTokenCache.verify(SECRET_KEY, token, JwtClaimsConstant.EMP_ID);
+
+        //管理端令牌不能作为用户端令牌使用
+        assertThrows(NullPointerException.class,
+                () -> jwtTokenCache.verify(SECRET_KEY, token, JwtClaimsConstant.USER_ID));
+    }
+
+    private String createToken(String claim, Long id, long ttlMillis) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(claim, id);
+        return JwtUtil.createJWT(SECRET_KEY, ttlMillis, claims);
+    }
+}
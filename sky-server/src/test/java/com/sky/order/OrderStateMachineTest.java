@@ -0,0 +1,148 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.OrdersCancelDTO;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.BusinessStatsService;
+import com.sky.service.impl.OrderServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderStateMachineTest {
+
+    private static final Long ORDER_ID = 1L;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private BusinessStatsService businessStatsService;
+
+    @InjectMocks
+    private OrderStateMachine orderStateMachine;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderService, "orderStateMachine", orderStateMachine);
+    }
+
+    @Test
+    void cancelRefundsPaidOrder() {
+        when(orderMapper.updateStatusByIdAndStatus(eq(ORDER_ID), anyList(), any(Orders.class), eq(Orders.PAID), eq(Orders.REFUND)))
+                .thenReturn(1);
+
+        assertTrue(orderStateMachine.cancel(ORDER_ID, new Orders(), Orders.TO_BE_CONFIRMED));
+
+        ArgumentCaptor<Orders> target = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper).updateStatusByIdAndStatus(eq(ORDER_ID), eq(Arrays.asList(Orders.TO_BE_CONFIRMED)),
+                target.capture(), eq(Orders.PAID), eq(Orders.REFUND));
+        assertEquals(Orders.CANCELLED, target.getValue().getStatus());
+        //取消不改变营业数据，只执行一条update
+        verifyNoMoreInteractions(orderMapper);
+        verifyNoInteractions(businessStatsService);
+    }
+
+    @Test
+    void completeMarksOrderChanged() {
+        when(orderMapper.updateStatusByIdAndStatus(eq(ORDER_ID), anyList(), any(Orders.class), isNull(), eq(Orders.REFUND)))
+                .thenReturn(1);
+
+        Orders target = Orders.builder().status(Orders.COMPLETED).build();
+        assertTrue(orderStateMachine.transition(ORDER_ID, target, Orders.DELIVERY_IN_PROGRESS));
+
+        //完成订单后记录订单id，下单日期在重新汇总时批量查询
+        verify(businessStatsService).markChanged(ORDER_ID);
+        verify(orderMapper).updateStatusByIdAndStatus(eq(ORDER_ID), anyList(), any(Orders.class), isNull(), eq(Orders.REFUND));
+        verifyNoMoreInteractions(orderMapper);
+    }
+
+    @Test
+    void transitionKeepsPayStatus() {
+        when(orderMapper.updateStatusByIdAndStatus(eq(ORDER_ID), anyList(), any(Orders.class), isNull(), eq(Orders.REFUND)))
+                .thenReturn(1);
+
+        Orders target = Orders.builder().status(Orders.CONFIRMED).build();
+        assertTrue(orderStateMachine.transition(ORDER_ID, target, Orders.TO_BE_CONFIRMED));
+    }
+
+    @Test
+    void failedTransitionReturnsFalse() {
+        when(orderMapper.updateStatusByIdAndStatus(eq(ORDER_ID), anyList(), any(Orders.class), isNull(), eq(Orders.REFUND)))
+                .thenReturn(0);
+
+        Orders target = Orders.builder().status(Orders.CONFIRMED).build();
+        assertFalse(orderStateMachine.transition(ORDER_ID, target, Orders.TO_BE_CONFIRMED));
+        verifyNoInteractions(businessStatsService);
+    }
+
+    @Test
+    void rejectsIllegalTransition() {
+        assertFalse(OrderStateMachine.canTransition(Orders.COMPLETED, Orders.CANCELLED));
+        assertFalse(OrderStateMachine.canTransition(Orders.CANCELLED, Orders.CANCELLED));
+        assertFalse(OrderStateMachine.canTransition(Orders.PENDING_PAYMENT, Orders.COMPLETED));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> orderStateMachine.cancel(ORDER_ID, new Orders(), Orders.COMPLETED));
+        verifyNoInteractions(orderMapper);
+    }
+
+    @Test
+    void adminCancelOnlyAllowsUnfinishedOrders() throws Exception {
+        when(orderMapper.updateStatusByIdAndStatus(eq(ORDER_ID), anyList(), any(Orders.class), eq(Orders.PAID), eq(Orders.REFUND)))
+                .thenReturn(1);
+        OrdersCancelDTO dto = new OrdersCancelDTO();
+        dto.setId(ORDER_ID);
+        dto.setCancelReason("菜品已售完");
+
+        orderService.orderCancel(dto);
+
+        ArgumentCaptor<List<Integer>> fromStatuses = ArgumentCaptor.forClass(List.class);
+        verify(orderMapper).updateStatusByIdAndStatus(eq(ORDER_ID), fromStatuses.capture(), any(Orders.class),
+                eq(Orders.PAID), eq(Orders.REFUND));
+        assertEquals(Arrays.asList(Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED, Orders.CONFIRMED,
+                Orders.DELIVERY_IN_PROGRESS), fromStatuses.getValue());
+    }
+
+    @Test
+    void adminCancelOfCompletedOrderFails() {
+        //已完成的订单不满足状态条件，update不会修改任何数据
+        when(orderMapper.updateStatusByIdAndStatus(eq(ORDER_ID), anyList(), any(Orders.class), eq(Orders.PAID), eq(Orders.REFUND)))
+                .thenReturn(0);
+        when(orderMapper.getById(ORDER_ID)).thenReturn(Orders.builder().id(ORDER_ID).status(Orders.COMPLETED).build());
+        OrdersCancelDTO dto = new OrdersCancelDTO();
+        dto.setId(ORDER_ID);
+
+        OrderBusinessException e = assertThrows(OrderBusinessException.class, () -> orderService.orderCancel(dto));
+        assertEquals(MessageConstant.ORDER_STATUS_ERROR, e.getMessage());
+        verify(businessStatsService, never()).markChanged(any());
+    }
+}
@@ -0,0 +1,46 @@
+package com.sky.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderTimeoutQueueTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @InjectMocks
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @Test
+    void pollExpiredParsesIds() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(Collections.singletonList("order_timeout")),
+                anyString(), eq("500"))).thenReturn("3,1,20");
+
+        assertEquals(Arrays.asList(3L, 1L, 20L), orderTimeoutQueue.pollExpired(500));
+    }
+
+    @Test
+    void pollExpiredReturnsEmptyListWhenNothingExpired() {
+        //lua的空table拼接后为空字符串
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(Collections.singletonList("order_timeout")),
+                anyString(), anyString())).thenReturn("");
+
+        assertTrue(orderTimeoutQueue.pollExpired(500).isEmpty());
+    }
+}
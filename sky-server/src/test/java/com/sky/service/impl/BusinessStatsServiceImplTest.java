@@ -0,0 +1,175 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyOrderStatisticsDTO;
+import com.sky.dto.DailyUserStatisticsDTO;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BusinessStatsServiceImplTest {
+
+    private static final LocalDate BEGIN = LocalDate.of(2026, 1, 1);
+    private static final LocalDate END = LocalDate.of(2026, 1, 4);
+
+    @Mock
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    @InjectMocks
+    private BusinessStatsServiceImpl businessStatsService;
+
+    @Test
+    void rollupFillsEveryDayFromOneGroupedQuery() {
+        LocalDateTime beginTime = LocalDateTime.of(BEGIN, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(END, LocalTime.MAX);
+        when(orderMapper.getDailyStatistics(beginTime, endTime, Orders.COMPLETED)).thenReturn(Arrays.asList(
+                new DailyOrderStatisticsDTO(BEGIN, 3, 2, 50.0),
+                new DailyOrderStatisticsDTO(BEGIN.plusDays(2), 1, 0, null)));
+        when(userMapper.getDailyNewUsers(beginTime, endTime)).thenReturn(Arrays.asList(
+                new DailyUserStatisticsDTO(BEGIN.plusDays(1), 2),
+                new DailyUserStatisticsDTO(END, 1)));
+        when(userMapper.getUserByTime(null, LocalDateTime.of(BEGIN.minusDays(1), LocalTime.MAX))).thenReturn(10);
+
+        businessStatsService.rollup(BEGIN, END);
+
+        List<DailyBusinessStats> statsList = captureRollup();
+        //没有数据的日期各项为0，营业额为null时按0处理
+        assertEquals(Arrays.asList(BEGIN, BEGIN.plusDays(1), BEGIN.plusDays(2), END),
+                statsList.stream().map(DailyBusinessStats::getDate).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(3, 0, 1, 0),
+                statsList.stream().map(DailyBusinessStats::getOrderCount).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(2, 0, 0, 0),
+                statsList.stream().map(DailyBusinessStats::getValidOrderCount).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(50.0, 0.0, 0.0, 0.0),
+                statsList.stream().map(DailyBusinessStats::getTurnover).collect(Collectors.toList()));
+        //用户总数为begin之前的用户数加上每天新增用户数的累计
+        assertEquals(Arrays.asList(0, 2, 0, 1),
+                statsList.stream().map(DailyBusinessStats::getNewUsers).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(10, 12, 12, 13),
+                statsList.stream().map(DailyBusinessStats::getTotalUsers).collect(Collectors.toList()));
+        verify(orderMapper, times(1)).getDailyStatistics(any(), any(), any());
+        verify(userMapper, times(1)).getDailyNewUsers(any(), any());
+    }
+
+    @Test
+    void getDailyStatsContinuesTotalUsersFromSummarizedDays() {
+        DailyBusinessStats first = DailyBusinessStats.builder()
+                .date(BEGIN).turnover(1.0).orderCount(1).validOrderCount(1).newUsers(1).totalUsers(20).build();
+        when(dailyBusinessStatsMapper.list(BEGIN, END)).thenReturn(Collections.singletonList(first));
+        when(userMapper.getDailyNewUsers(any(), any()))
+                .thenReturn(Collections.singletonList(new DailyUserStatisticsDTO(END, 4)));
+
+        List<DailyBusinessStats> statsList = businessStatsService.getDailyStats(BEGIN, END);
+
+        //已汇总的日期直接使用汇总数据，之后的日期从汇总数据的用户总数继续累计
+        assertEquals(4, statsList.size());
+        assertEquals(first, statsList.get(0));
+        assertEquals(Arrays.asList(20, 20, 20, 24),
+                statsList.stream().map(DailyBusinessStats::getTotalUsers).collect(Collectors.toList()));
+        verify(orderMapper).getDailyStatistics(LocalDateTime.of(BEGIN.plusDays(1), LocalTime.MIN),
+                LocalDateTime.of(END, LocalTime.MAX), Orders.COMPLETED);
+        verify(dailyBusinessStatsMapper, never()).getByDate(any());
+        verify(userMapper, never()).getUserByTime(isNull(), any());
+    }
+
+    @Test
+    void markChangedOnlyRecordsOrderId() {
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+
+        businessStatsService.markChanged(7L);
+
+        verify(setOperations).add("business_stats_changed_orders", "7");
+        verifyNoInteractions(orderMapper);
+    }
+
+    @Test
+    void rollupChangedResolvesOrderDatesInOneQuery() {
+        LocalDate day = LocalDate.now().minusDays(5);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.pop("business_stats_changed_orders", 1000)).thenReturn(Arrays.asList("1", "2", "3"));
+        when(orderMapper.getOrderDatesByIds(Arrays.asList(1L, 2L, 3L), LocalDate.now().atStartOfDay()))
+                .thenReturn(Collections.singletonList(day));
+        when(setOperations.pop("business_stats_changed_dates", 100)).thenReturn(Collections.singletonList(day.toString()));
+        when(orderMapper.getDailyStatistics(any(), any(), any())).thenReturn(Collections.emptyList());
+        when(userMapper.getDailyNewUsers(any(), any())).thenReturn(Collections.emptyList());
+
+        businessStatsService.rollupChanged();
+
+        //多个订单的下单日期去重后只重新汇总一次
+        verify(setOperations).add("business_stats_changed_dates", day.toString());
+        assertEquals(day, captureRollup().get(0).getDate());
+        verify(orderMapper, times(1)).getOrderDatesByIds(anyList(), any());
+    }
+
+    @Test
+    void rollupChangedKeepsOrdersWhenDateQueryFails() {
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.pop("business_stats_changed_orders", 1000)).thenReturn(Arrays.asList("1", "2"));
+        when(orderMapper.getOrderDatesByIds(anyList(), any())).thenThrow(new IllegalStateException("db down"));
+
+        businessStatsService.rollupChanged();
+
+        //查询失败时订单id放回集合，下次重试
+        verify(setOperations).add("business_stats_changed_orders", "1", "2");
+        verify(dailyBusinessStatsMapper, never()).insertOrUpdateBatch(anyList());
+    }
+
+    @Test
+    void rollupChangedRequeuesFailedDate() {
+        LocalDate day = LocalDate.now().minusDays(5);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.pop("business_stats_changed_dates", 100)).thenReturn(Collections.singletonList(day.toString()));
+        when(orderMapper.getDailyStatistics(any(), any(), any())).thenThrow(new IllegalStateException("db down"));
+
+        businessStatsService.rollupChanged();
+
+        verify(setOperations).add("business_stats_changed_dates", day.toString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DailyBusinessStats> captureRollup() {
+        ArgumentCaptor<List<DailyBusinessStats>> captor = ArgumentCaptor.forClass(List.class);
+        verify(dailyBusinessStatsMapper).insertOrUpdateBatch(captor.capture());
+        return captor.getValue();
+    }
+}
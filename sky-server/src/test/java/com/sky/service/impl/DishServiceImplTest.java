@@ -0,0 +1,73 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DishServiceImplTest {
+
+    @Mock
+    private DishMapper dishMapper;
+
+    @Mock
+    private DishFlavorMapper dishFlavorMapper;
+
+    @InjectMocks
+    private DishServiceImpl dishService;
+
+    @Test
+    void listWithFlavorLoadsAllFlavorsInOneQuery() {
+        Dish dish = Dish.builder().categoryId(1L).build();
+        when(dishMapper.list(dish)).thenReturn(Arrays.asList(
+                Dish.builder().id(1L).build(), Dish.builder().id(2L).build(), Dish.builder().id(3L).build()));
+        when(dishFlavorMapper.getByDishIds(Arrays.asList(1L, 2L, 3L))).thenReturn(Arrays.asList(
+                flavor(1L, "辣度"), flavor(3L, "甜味"), flavor(1L, "忌口")));
+
+        List<DishVO> list = dishService.listWithFlavor(dish);
+
+        //口味按菜品id分组并保持查询顺序，没有口味的菜品得到空列表
+        assertEquals(3, list.size());
+        assertEquals(Arrays.asList("辣度", "忌口"), names(list.get(0)));
+        assertTrue(list.get(1).getFlavors().isEmpty());
+        assertEquals(Collections.singletonList("甜味"), names(list.get(2)));
+        verify(dishFlavorMapper, times(1)).getByDishIds(anyList());
+    }
+
+    @Test
+    void listWithFlavorSkipsFlavorQueryWhenNoDish() {
+        when(dishMapper.list(any(Dish.class))).thenReturn(Collections.emptyList());
+
+        assertTrue(dishService.listWithFlavor(new Dish()).isEmpty());
+        verify(dishFlavorMapper, never()).getByDishIds(anyList());
+    }
+
+    private static DishFlavor flavor(Long dishId, String name) {
+        return DishFlavor.builder().dishId(dishId).name(name).build();
+    }
+
+    private static List<String> names(DishVO dishVO) {
+        return dishVO.getFlavors().stream().map(DishFlavor::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,118 @@
+package com.sky.service.impl;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrderStatusCountDTO;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.result.PageResult;
+import com.sky.vo.OrderStatisticsVO;
+import com.sky.vo.OrderVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceImplTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderDetailMapper orderDetailMapper;
+
+    @InjectMocks
+    private OrderServiceImpl orderService;
+
+    @AfterEach
+    void tearDown() {
+        PageHelper.clearPage();
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void pageQueryLoadsDetailsOfWholePageInOneQuery() {
+        BaseContext.setCurrentId(1L);
+        when(orderMapper.pageQuery(any(OrdersPageQueryDTO.class))).thenReturn(page(1L, 2L, 3L));
+        when(orderDetailMapper.getByOrderIds(Arrays.asList(1L, 2L, 3L))).thenReturn(Arrays.asList(
+                detail(1L, "鱼香肉丝"), detail(3L, "宫保鸡丁"), detail(1L, "米饭")));
+
+        PageResult result = orderService.pageQuery(1, 10, null);
+
+        //明细按订单id分组，没有明细的订单得到空列表
+        List<?> records = result.getRecords();
+        assertEquals(3, records.size());
+        assertEquals(Arrays.asList("鱼香肉丝", "米饭"), names((OrderVO) records.get(0)));
+        assertTrue(((OrderVO) records.get(1)).getOrderDetailList().isEmpty());
+        assertEquals(Arrays.asList("宫保鸡丁"), names((OrderVO) records.get(2)));
+        verify(orderDetailMapper, times(1)).getByOrderIds(anyList());
+    }
+
+    @Test
+    void orderSearchBuildsDishSummaryFromGroupedDetails() {
+        when(orderMapper.pageQuery(any(OrdersPageQueryDTO.class))).thenReturn(page(1L, 2L));
+        when(orderDetailMapper.getByOrderIds(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(detail(2L, "米饭")));
+
+        OrdersPageQueryDTO dto = new OrdersPageQueryDTO();
+        dto.setPage(1);
+        dto.setPageSize(10);
+        PageResult result = orderService.orderSearch(dto);
+
+        List<?> records = result.getRecords();
+        assertEquals("", ((OrderVO) records.get(0)).getOrderDishes());
+        assertEquals("米饭null×1 价格：2  ", ((OrderVO) records.get(1)).getOrderDishes());
+        verify(orderDetailMapper, times(1)).getByOrderIds(anyList());
+    }
+
+    @Test
+    void statusStatisticsUsesOneGroupedQuery() {
+        List<Integer> statuses = Arrays.asList(Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS);
+        when(orderMapper.getCountGroupByStatus(null, statuses)).thenReturn(Arrays.asList(
+                new OrderStatusCountDTO(Orders.TO_BE_CONFIRMED, 3), new OrderStatusCountDTO(Orders.DELIVERY_IN_PROGRESS, 1)));
+
+        OrderStatisticsVO statistics = orderService.statusStatistics();
+
+        //没有订单的状态数量为0
+        assertEquals(3, statistics.getToBeConfirmed());
+        assertEquals(0, statistics.getConfirmed());
+        assertEquals(1, statistics.getDeliveryInProgress());
+        verify(orderMapper, times(1)).getCountGroupByStatus(any(), anyList());
+    }
+
+    private static Page<Orders> page(Long... ids) {
+        Page<Orders> page = new Page<>(1, 10);
+        for (Long id : ids) {
+            page.add(Orders.builder().id(id).build());
+        }
+        page.setTotal(ids.length);
+        return page;
+    }
+
+    private static OrderDetail detail(Long orderId, String name) {
+        return OrderDetail.builder().orderId(orderId).name(name).number(1).amount(new BigDecimal("2")).build();
+    }
+
+    private static List<String> names(OrderVO orderVO) {
+        return orderVO.getOrderDetailList().stream().map(OrderDetail::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,57 @@
+package com.sky.service.impl;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.service.BusinessStatsService;
+import com.sky.vo.BusinessDataVO;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReportServiceImplTest {
+
+    @Mock
+    private BusinessStatsService businessStatsService;
+
+    @InjectMocks
+    private ReportServiceImpl reportService;
+
+    @Test
+    void exportWritesOneDetailRowPerDay() throws Exception {
+        LocalDate begin = LocalDate.of(2026, 1, 1);
+        LocalDate end = begin.plusDays(199);
+        List<DailyBusinessStats> dailyStats = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            dailyStats.add(DailyBusinessStats.builder().date(date).build());
+        }
+        when(businessStatsService.getDailyStats(begin, end)).thenReturn(dailyStats);
+        when(businessStatsService.getBusinessData(anyList())).thenReturn(BusinessDataVO.builder()
+                .turnover(10.0).validOrderCount(1).orderCompletionRate(1.0).unitPrice(10.0).newUsers(0).build());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        reportService.exportBusiness(begin, end, response);
+
+        //明细行数超过流式写入的窗口大小，全部写入文件
+        try (XSSFWorkbook excel = new XSSFWorkbook(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            XSSFSheet sheet = excel.getSheet("Sheet1");
+            assertEquals("时间：" + begin + "至" + end, sheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals(begin.toString(), sheet.getRow(7).getCell(1).getStringCellValue());
+            assertEquals(end.toString(), sheet.getRow(7 + 199).getCell(1).getStringCellValue());
+            assertEquals(7 + 199, sheet.getLastRowNum());
+        }
+    }
+}
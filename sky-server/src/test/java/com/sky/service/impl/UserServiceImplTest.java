@@ -0,0 +1,209 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.UserLoginDTO;
+import com.sky.entity.User;
+import com.sky.exception.LoginFailedException;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.VirtualThreadProperties;
+import com.sky.properties.WeChatProperties;
+import com.sky.queue.UserRegistrationQueue;
+import com.sky.utils.HttpClientUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 使用本地HttpServer代替微信登录接口，统计接口被调用的次数
+ */
+@ExtendWith(MockitoExtension.class)
+class UserServiceImplTest {
+
+    //桩服务的响应延迟，保证并发登录时前一次调用还没有完成
+    private static final long DELAY_MILLIS = 300;
+
+    private static HttpServer server;
+
+    private static ExecutorService serverExecutor;
+
+    private static String loginUrl;
+
+    private static final AtomicInteger wxCalls = new AtomicInteger();
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private UserRegistrationQueue userRegistrationQueue;
+
+    @Spy
+    private WeChatProperties weChatProperties = new WeChatProperties();
+
+    @Spy
+    private VirtualThreadProperties virtualThreadProperties = new VirtualThreadProperties();
+
+    @InjectMocks
+    private UserServiceImpl userService;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sns/jscode2session", UserServiceImplTest::jscode2session);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        loginUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/sns/jscode2session";
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdown();
+        HttpClientUtil.shutdown();
+    }
+
+    @BeforeEach
+    void setUp() {
+        weChatProperties.setLoginUrl(loginUrl);
+        wxCalls.set(0);
+        userService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userService.destroy();
+    }
+
+    @Test
+    void coalescesConcurrentLoginsWithSameCode() throws Exception {
+        User user = User.builder().id(1L).openid("o-code1").build();
+        when(userMapper.getByOpenid("o-code1")).thenReturn(user);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<CompletableFuture<User>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return userService.wxLogin(login("code1"));
+                }));
+            }
+            start.countDown();
+
+            for (Future<CompletableFuture<User>> future : futures) {
+                assertSame(user, future.get().get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        //同一个code只调用一次微信接口，只查询一次用户
+        assertEquals(1, wxCalls.get());
+        verify(userMapper, times(1)).getByOpenid(anyString());
+        assertTrue(loginsInFlight().isEmpty());
+
+        //完成后再次登录重新调用微信接口，老用户从缓存中获取
+        assertSame(user, userService.wxLogin(login("code1")).get(5, TimeUnit.SECONDS));
+        assertEquals(2, wxCalls.get());
+        verify(userMapper, times(1)).getByOpenid(anyString());
+    }
+
+    @Test
+    void removesFailedLogin() {
+        CompletableFuture<User> future = userService.wxLogin(login("bad"));
+
+        //没有openid时登录失败，失败的结果同样被移除
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(LoginFailedException.class, e.getCause());
+        assertEquals(MessageConstant.LOGIN_FAILED, e.getCause().getMessage());
+        assertTrue(loginsInFlight().isEmpty());
+    }
+
+    @Test
+    void rejectsLoginWhenBusy() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        userService.destroy();
+        ReflectionTestUtils.setField(userService, "loginExecutor", executor);
+        when(userMapper.getByOpenid("o-slow")).thenReturn(User.builder().id(2L).openid("o-slow").build());
+
+        CompletableFuture<User> slow = userService.wxLogin(login("slow"));
+        CompletableFuture<User> rejected = userService.wxLogin(login("other"));
+
+        //线程池已满时立即返回繁忙，不在请求线程中调用微信接口
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertEquals(MessageConstant.LOGIN_BUSY, e.getCause().getMessage());
+        assertEquals(1, loginsInFlight().size());
+
+        slow.get(5, TimeUnit.SECONDS);
+        assertEquals(1, wxCalls.get());
+        assertTrue(loginsInFlight().isEmpty());
+    }
+
+    private Map<?, ?> loginsInFlight() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(userService, "loginsInFlight");
+    }
+
+    private static UserLoginDTO login(String code) {
+        UserLoginDTO dto = new UserLoginDTO();
+        dto.setCode(code);
+        return dto;
+    }
+
+    private static void jscode2session(HttpExchange exchange) throws IOException {
+        wxCalls.incrementAndGet();
+        String query = exchange.getRequestURI().getQuery();
+        String code = query.replaceAll(".*js_code=([^&]*).*", "$1");
+        try {
+            Thread.sleep(DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String body = "bad".equals(code) ? "{\"errcode\":40029}" : "{\"openid\":\"o-" + code + "\"}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.sky.service.impl;
+
+import com.sky.dto.OrderStatusCountDTO;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.vo.OrderOverViewVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WorkspaceServiceImplTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @InjectMocks
+    private WorkspaceServiceImpl workspaceService;
+
+    @Test
+    void orderOverViewCountsTodayByStatusInOneQuery() {
+        when(orderMapper.getCountGroupByStatus(any(LocalDateTime.class), isNull())).thenReturn(Arrays.asList(
+                new OrderStatusCountDTO(Orders.PENDING_PAYMENT, 2),
+                new OrderStatusCountDTO(Orders.TO_BE_CONFIRMED, 3),
+                new OrderStatusCountDTO(Orders.COMPLETED, 5),
+                new OrderStatusCountDTO(Orders.CANCELLED, 1)));
+
+        OrderOverViewVO overView = workspaceService.getOrderOverView();
+
+        //全部订单为各状态数量之和，没有订单的状态为0
+        assertEquals(3, overView.getWaitingOrders());
+        assertEquals(0, overView.getDeliveredOrders());
+        assertEquals(5, overView.getCompletedOrders());
+        assertEquals(1, overView.getCancelledOrders());
+        assertEquals(11, overView.getAllOrders());
+    }
+}
@@ -0,0 +1,139 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.queue.OrderTimeoutQueue;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderTaskTest {
+
+    @Mock
+    private OrderMapper orderMapper;
+
+    @Mock
+    private OrderTimeoutQueue orderTimeoutQueue;
+
+    @InjectMocks
+    private OrderTask orderTask;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderTask, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    void timeoutSweepRunsChunksUntilShortChunk() {
+        when(orderMapper.updateStatusByOrderTimeLT(eq(Orders.PENDING_PAYMENT), any(LocalDateTime.class), any(Orders.class), eq(500)))
+                .thenReturn(500, 500, 12);
+
+        orderTask.processTimeoutOrder();
+
+        ArgumentCaptor<Orders> orders = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper, times(3)).updateStatusByOrderTimeLT(eq(Orders.PENDING_PAYMENT), any(LocalDateTime.class),
+                orders.capture(), eq(500));
+        assertEquals(Orders.CANCELLED, orders.getValue().getStatus());
+        assertNotNull(orders.getValue().getCancelTime());
+        assertEquals(1012, count("timeoutSweep"));
+    }
+
+    @Test
+    void deliverySweepCompletesOrdersAndStopsOnEmptyChunk() {
+        when(orderMapper.updateStatusByOrderTimeLT(eq(Orders.DELIVERY_IN_PROGRESS), any(LocalDateTime.class), any(Orders.class), eq(500)))
+                .thenReturn(500, 0);
+
+        orderTask.processDeliveryOrder();
+
+        ArgumentCaptor<Orders> orders = ArgumentCaptor.forClass(Orders.class);
+        verify(orderMapper, times(2)).updateStatusByOrderTimeLT(eq(Orders.DELIVERY_IN_PROGRESS), any(LocalDateTime.class),
+                orders.capture(), eq(500));
+        assertEquals(Orders.COMPLETED, orders.getValue().getStatus());
+        assertNotNull(orders.getValue().getDeliveryTime());
+        assertEquals(500, count("deliverySweep"));
+    }
+
+    @Test
+    void timeoutQueueCancelsExpiredOrdersByChunk() {
+        List<Long> fullChunk = LongStream.rangeClosed(1, 500).boxed().collect(Collectors.toList());
+        when(orderTimeoutQueue.pollExpired(500)).thenReturn(fullChunk, Arrays.asList(501L, 502L));
+        when(orderMapper.updateStatusByIds(anyList(), eq(Orders.PENDING_PAYMENT), any(Orders.class))).thenReturn(499, 2);
+
+        orderTask.processTimeoutQueue();
+
+        //只有当前仍为待付款的订单会被取消，已支付的订单不受影响
+        verify(orderMapper).updateStatusByIds(eq(fullChunk), eq(Orders.PENDING_PAYMENT), any(Orders.class));
+        verify(orderMapper).updateStatusByIds(eq(Arrays.asList(501L, 502L)), eq(Orders.PENDING_PAYMENT), any(Orders.class));
+        verify(orderTimeoutQueue, times(2)).pollExpired(500);
+        assertEquals(501, count("timeoutQueue"));
+    }
+
+    @Test
+    void emptyTimeoutQueueRunsNoUpdate() {
+        when(orderTimeoutQueue.pollExpired(500)).thenReturn(Collections.emptyList());
+
+        orderTask.processTimeoutQueue();
+
+        verify(orderMapper, never()).updateStatusByIds(anyList(), any(), any());
+    }
+
+    @Test
+    void chunkedUpdateOrdersByIdBeforeLimit() throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        String resource = "mapper/OrderMapper.xml";
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            new XMLMapperBuilder(in, configuration, resource, configuration.getSqlFragments()).parse();
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("fromStatus", Orders.PENDING_PAYMENT);
+        params.put("orderTime", LocalDateTime.now());
+        params.put("orders", Orders.builder().status(Orders.CANCELLED).build());
+        params.put("limit", 500);
+
+        BoundSql sql = configuration.getMappedStatement("com.sky.mapper.OrderMapper.updateStatusByOrderTimeLT")
+                .getBoundSql(params);
+
+        //每批按主键顺序更新，行顺序确定，加锁顺序稳定
+        String text = sql.getSql().replaceAll("\\s+", " ");
+        assertTrue(text.endsWith("where status = ? and order_time < ? order by id limit ?"), text);
+    }
+
+    private double count(String task) {
+        return meterRegistry.counter("sky.order.transition", "task", task).count();
+    }
+}
@@ -0,0 +1,50 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.WebSocketTopicConstant;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class OrderNotificationTest {
+
+    @Test
+    void encodesNewOrder() {
+        OrderNotification notification = OrderNotification.newOrder(12L, "1700000000001");
+
+        assertEquals("{\"type\":1,\"orderId\":12,\"content\":\"订单号：1700000000001\"}", notification.toJson());
+        assertEquals(WebSocketTopicConstant.ORDER, notification.getTopic());
+    }
+
+    @Test
+    void encodesReminder() {
+        OrderNotification notification = OrderNotification.reminder(34L, "1700000000002");
+
+        JSONObject json = JSON.parseObject(notification.toJson());
+        assertEquals(OrderNotification.TYPE_REMINDER, json.getIntValue("type"));
+        assertEquals(34L, json.getLongValue("orderId"));
+        assertEquals("订单号：1700000000002", json.getString("content"));
+        assertEquals(WebSocketTopicConstant.REMINDER, notification.getTopic());
+    }
+
+    @Test
+    void escapesSpecialCharacters() {
+        String orderNumber = "a\"b\\c\nd\re\tf\u0001g";
+        OrderNotification notification = OrderNotification.newOrder(1L, orderNumber);
+
+        //转义后的json能被标准解析器还原
+        JSONObject json = JSON.parseObject(notification.toJson());
+        assertEquals("订单号：" + orderNumber, json.getString("content"));
+        assertEquals(notification.getContent(), json.getString("content"));
+    }
+
+    @Test
+    void encodesOnce() {
+        OrderNotification notification = OrderNotification.newOrder(1L, "1");
+
+        //推送给所有会话时共用同一个字符串
+        assertSame(notification.toJson(), notification.toJson());
+    }
+}
@@ -0,0 +1,102 @@
+package com.sky.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionSenderTest {
+
+    private Session session;
+    private RemoteEndpoint.Async remote;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(Session.class);
+        remote = mock(RemoteEndpoint.Async.class);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        when(session.isOpen()).thenReturn(true);
+    }
+
+    @Test
+    void sendsQueuedMessagesOneAtATime() {
+        doAnswer(invocation -> {
+            SendHandler handler = invocation.getArgument(1);
+            handler.onResult(new SendResult());
+            return null;
+        }).when(remote).sendText(anyString(), any(SendHandler.class));
+        SessionSender sender = new SessionSender("1", session, new String[0], 10, 1000);
+
+        assertTrue(sender.send("a"));
+        assertTrue(sender.send("b"));
+
+        verify(remote).sendText(eq("a"), any(SendHandler.class));
+        verify(remote).sendText(eq("b"), any(SendHandler.class));
+        assertFalse(sender.isClosed());
+    }
+
+    @Test
+    void closesSenderWhenSendThrows() throws Exception {
+        doThrow(new IllegalStateException("closed")).when(remote).sendText(anyString(), any(SendHandler.class));
+        SessionSender sender = new SessionSender("1", session, new String[0], 10, 1000);
+
+        //发送异常不能抛给调用方，会话被关闭并返回false
+        assertFalse(sender.send("a"));
+        assertTrue(sender.isClosed());
+        verify(session).close(any(CloseReason.class));
+
+        //已关闭的会话不再发送
+        assertFalse(sender.send("b"));
+        verify(remote, times(1)).sendText(anyString(), any(SendHandler.class));
+    }
+
+    @Test
+    void concurrentCloseClosesSessionOnce() throws Exception {
+        SessionSender sender = new SessionSender("1", session, new String[0], 10, 1000);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    sender.close(null);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(sender.isClosed());
+        verify(session, times(1)).close();
+    }
+}
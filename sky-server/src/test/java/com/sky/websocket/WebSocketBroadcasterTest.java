@@ -0,0 +1,126 @@
+package com.sky.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class WebSocketBroadcasterTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private WebSocketServer webSocketServer;
+
+    @InjectMocks
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    private final ManualExecutor executor = new ManualExecutor();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(webSocketBroadcaster, "executor", executor);
+    }
+
+    @Test
+    void duplicatesWithinBatchAreDeliveredOnce() {
+        receive("order|{\"orderId\":1}");
+        receive("reminder|{\"orderId\":1}");
+        receive("order|{\"orderId\":1}");
+        receive("order|{\"orderId\":2}");
+
+        //积压的消息只提交一个推送任务
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+
+        //同一批中主题和内容都相同的消息只推送一次，保持到达顺序
+        InOrder inOrder = inOrder(webSocketServer);
+        inOrder.verify(webSocketServer).sendToTopic("order", "{\"orderId\":1}");
+        inOrder.verify(webSocketServer).sendToTopic("reminder", "{\"orderId\":1}");
+        inOrder.verify(webSocketServer).sendToTopic("order", "{\"orderId\":2}");
+        verify(webSocketServer, times(3)).sendToTopic(anyString(), anyString());
+    }
+
+    @Test
+    void sameMessageInLaterBatchIsDeliveredAgain() {
+        receive("order|{\"orderId\":1}");
+        executor.runAll();
+        receive("order|{\"orderId\":1}");
+        executor.runAll();
+
+        verify(webSocketServer, times(2)).sendToTopic("order", "{\"orderId\":1}");
+    }
+
+    @Test
+    void publishFallsBackToLocalSessionsWhenRedisFails() {
+        doThrow(new IllegalStateException("redis down")).when(stringRedisTemplate)
+                .convertAndSend(eq(WebSocketBroadcaster.CHANNEL), anyString());
+
+        webSocketBroadcaster.publish("order", "{\"orderId\":1}");
+        executor.runAll();
+
+        verify(webSocketServer).sendToTopic("order", "{\"orderId\":1}");
+    }
+
+    private void receive(String body) {
+        webSocketBroadcaster.onMessage(new DefaultMessage(WebSocketBroadcaster.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    //手动执行提交的任务，便于控制批次
+    private static class ManualExecutor extends AbstractExecutorService {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        public void shutdown() {
+        }
+
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<>(tasks);
+        }
+
+        public boolean isShutdown() {
+            return false;
+        }
+
+        public boolean isTerminated() {
+            return false;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.sky.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebSocketServerTest {
+
+    private final WebSocketServer webSocketServer = new WebSocketServer();
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        //会话表是静态的，逐个断开避免影响其它测试
+        for (Session session : sessions) {
+            webSocketServer.onClose(session, session.getId());
+        }
+    }
+
+    @Test
+    void sessionTopicDoesNotCollideWithBusinessTopics() {
+        //sid与业务主题同名的客户端
+        Session order = open("order", "reminder");
+        Session admin = open("1", "order");
+
+        webSocketServer.sendToTopic("order", "新订单");
+        webSocketServer.sendToTopic("sid:order", "单独推送");
+
+        verify(order.getAsyncRemote(), never()).sendText(eq("新订单"), any(SendHandler.class));
+        verify(order.getAsyncRemote()).sendText(eq("单独推送"), any(SendHandler.class));
+        verify(admin.getAsyncRemote()).sendText(eq("新订单"), any(SendHandler.class));
+        verify(admin.getAsyncRemote(), never()).sendText(eq("单独推送"), any(SendHandler.class));
+    }
+
+    @Test
+    void clientCannotSubscribeToOtherSessionTopic() {
+        open("1", null);
+        Session other = open("2", "sid:1");
+
+        webSocketServer.sendToTopic("sid:1", "只给1");
+
+        verify(other.getAsyncRemote(), never()).sendText(anyString(), any(SendHandler.class));
+    }
+
+    private Session open(String sid, String topics) {
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        when(session.getId()).thenReturn(sid);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        when(session.isOpen()).thenReturn(true);
+        Map<String, List<String>> params = topics == null
+                ? Collections.emptyMap()
+                : Collections.singletonMap("topics", Collections.singletonList(topics));
+        when(session.getRequestParameterMap()).thenReturn(params);
+        doAnswer(invocation -> {
+            SendHandler handler = invocation.getArgument(1);
+            handler.onResult(new SendResult());
+            return null;
+        }).when(remote).sendText(anyString(), any(SendHandler.class));
+
+        webSocketServer.onOpen(session, sid);
+        sessions.add(session);
+        return session;
+    }
+}